@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the circuit breaker bookkeeping done by {@link NameService} around every name lookup, from several threads
+ * at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class CircuitBreakerBenchmark {
+
+    @Param({"COUNT_BASED", "TIME_BASED"})
+    public NameServiceProperties.WindowType windowType;
+
+    private CircuitBreaker closed;
+
+    private CircuitBreaker open;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        NameServiceProperties.Breaker config = new NameServiceProperties.Breaker();
+        config.setWindowType(windowType);
+        config.setWaitInOpen(TimeUnit.HOURS.toMillis(1));
+        closed = new CircuitBreaker(config);
+        open = new CircuitBreaker(config);
+        for (int i = 0; i < config.getMinimumCalls(); i++) {
+            open.tryAcquirePermission().onError(0);
+        }
+        if (open.getState() != CircuitBreaker.State.OPEN) {
+            throw new IllegalStateException("Breaker did not open");
+        }
+    }
+
+    /**
+     * Permission check and outcome recording of a successful call.
+     */
+    @Benchmark
+    public CircuitBreaker.Permit closedCall() {
+        CircuitBreaker.Permit permit = closed.tryAcquirePermission();
+        if (permit != null) {
+            permit.onSuccess(1000);
+        }
+        return permit;
+    }
+
+    /**
+     * Permission check that sends the caller to the fallback.
+     */
+    @Benchmark
+    public CircuitBreaker.Permit openCheck() {
+        return open.tryAcquirePermission();
+    }
+
+    /**
+     * Snapshot served by {@code /api/cb-state}.
+     */
+    @Benchmark
+    public CircuitBreakerState metrics() {
+        return closed.getMetrics();
+    }
+}
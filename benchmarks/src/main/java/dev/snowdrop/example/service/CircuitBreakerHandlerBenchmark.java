@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * Time to push one circuit breaker state change to every connected {@code /cb-ws} session, from
+ * {@link CircuitBreakerHandler#sendMessage(CircuitBreaker.State)} until the last session got it.
+ * <p>
+ * Sessions are proxies that only count the messages, so this measures the fan-out itself, not the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CircuitBreakerHandlerBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int sessions;
+
+    private final AtomicLong sent = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    private CircuitBreakerHandler handler;
+
+    private CircuitBreaker.State state = CircuitBreaker.State.CLOSED;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        NameService nameService = new NameService(new AsyncRestTemplate(), scheduler, new NameServiceProperties());
+        handler = new CircuitBreakerHandler(nameService);
+        for (int i = 0; i < sessions; i++) {
+            handler.afterConnectionEstablished(session(Integer.toString(i)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        handler.shutdown();
+        scheduler.shutdownNow();
+    }
+
+    @Benchmark
+    public long sendMessage() {
+        long target = sent.get() + sessions;
+        state = state == CircuitBreaker.State.OPEN ? CircuitBreaker.State.CLOSED : CircuitBreaker.State.OPEN;
+        handler.sendMessage(state);
+        long current;
+        while ((current = sent.get()) < target) {
+            Thread.yield();
+        }
+        return current;
+    }
+
+    private WebSocketSession session(String id) {
+        return (WebSocketSession) Proxy.newProxyInstance(WebSocketSession.class.getClassLoader(),
+                new Class<?>[] {WebSocketSession.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getId":
+                        case "toString":
+                            return id;
+                        case "isOpen":
+                            return true;
+                        case "sendMessage":
+                            sent.incrementAndGet();
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return method.getReturnType() == int.class ? 0 : null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpServer;
+import dev.snowdrop.example.common.OutcomeStatistics;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end cost of {@link GreetingController#getGreeting(String, String)} against a stub name service on a random
+ * local port, through the real client, breaker and bulkhead.
+ * <p>
+ * With {@code nameStatus=503} the stub answers like an overflowing Istio proxy: the breaker opens after a few calls and
+ * stays open, so the benchmark measures the fallback path behind the breaker state check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class GreetingControllerBenchmark {
+
+    @Param({"200", "503"})
+    public int nameStatus;
+
+    private HttpServer nameServer;
+
+    private ExecutorService nameServerThreads;
+
+    private PoolingNHttpClientConnectionManager connectionManager;
+
+    private ScheduledExecutorService scheduler;
+
+    private CloseableHttpAsyncClient httpClient;
+
+    private GreetingController controller;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] name = "World".getBytes(StandardCharsets.UTF_8);
+        nameServerThreads = Executors.newFixedThreadPool(8);
+        nameServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        nameServer.createContext("/api/name", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain;charset=UTF-8");
+            exchange.sendResponseHeaders(nameStatus, name.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(name);
+            }
+        });
+        nameServer.setExecutor(nameServerThreads);
+        nameServer.start();
+
+        NameServiceProperties properties = new NameServiceProperties();
+        properties.setHost("http://localhost:" + nameServer.getAddress().getPort());
+        // once open, keep the breaker open for the whole run
+        properties.getBreaker().setWaitInOpen(TimeUnit.HOURS.toMillis(1));
+
+        NameClientConfiguration configuration = new NameClientConfiguration();
+        connectionManager = configuration.nameConnectionManager(properties);
+        scheduler = configuration.nameScheduler();
+        httpClient = configuration.nameHttpClient(connectionManager, scheduler, properties);
+        NameService nameService = new NameService(configuration.nameRestTemplate(httpClient), scheduler, properties);
+        controller = new GreetingController(nameService, new OutcomeStatistics(60));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        httpClient.close();
+        scheduler.shutdownNow();
+        nameServer.stop(0);
+        nameServerThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public Object getGreeting() throws Exception {
+        return controller.getGreeting(null, null).get();
+    }
+
+    @Benchmark
+    public Object getGreetingFrom() throws Exception {
+        return controller.getGreeting("benchmark", null).get();
+    }
+}
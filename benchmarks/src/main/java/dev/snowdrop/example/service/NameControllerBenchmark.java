@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.time.LocalTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Cost of the name service endpoints, with and without {@code /name-sse} subscribers.
+ * <p>
+ * {@link #baseline(Blackhole)} repeats what {@link NameController#getName(String)} used to do on every call, so running
+ * with {@code -prof gc} shows the allocation per operation before and after side by side:
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar NameControllerBenchmark -prof gc
+ * </pre>
+ *
+ * {@link #getDelayedName()} goes through the async delay timer with a zero base delay, so it mostly measures the random
+ * processing time; its percentiles show how evenly the timer completes thousands of pending requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NameControllerBenchmark {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NameController.class);
+
+    /**
+     * Caller passed as {@code from}, empty for none.
+     */
+    @Param({"", "greeting"})
+    public String from;
+
+    /**
+     * Number of connected {@code /name-sse} subscribers.
+     */
+    @Param({"0", "10", "100"})
+    public int subscribers;
+
+    private String caller;
+
+    private NameEventBroadcaster events;
+
+    private NameController controller;
+
+    private NameController delayedController;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        caller = from.isEmpty() ? null : from;
+        events = new NameEventBroadcaster(300000, 64, 1024, 2);
+        for (int i = 0; i < subscribers; i++) {
+            events.subscribe(new DiscardingEmitter());
+        }
+        controller = new NameController(events, false, 1);
+        delayedController = new NameController(events, true, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        controller.shutdown();
+        delayedController.shutdown();
+        events.shutdown();
+    }
+
+    @Benchmark
+    public ResponseEntity<String> getName() {
+        return controller.getName(caller);
+    }
+
+    @Benchmark
+    @Threads(64)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object getDelayedName() throws Exception {
+        CompletableFuture<Object> response = new CompletableFuture<>();
+        delayedController.getDelayedName(caller, "0").setResultHandler(response::complete);
+        return response.get();
+    }
+
+    @Benchmark
+    public ResponseEntity<String> baseline(Blackhole blackhole) {
+        final String fromSuffix = caller != null ? " from " + caller : "";
+
+        final String name = "World" + fromSuffix;
+        LOG.info(String.format("Returning name '%s'", name));
+
+        blackhole.consume("GET /api/name at " + LocalTime.now() + fromSuffix);
+        return new ResponseEntity<>(name, HttpStatus.OK);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.http2.Http2Protocol;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.AsyncRestTemplate;
+
+/**
+ * Name lookups over HTTP/1.1 and over h2c, against an embedded Tomcat on a random local port that speaks both.
+ * <p>
+ * 64 callers share at most {@code connections} pooled HTTP/1.1 connections, like the restrictive destination rule,
+ * whereas h2c multiplexes all of them over a single connection. Compare the throughput and the p99 and p99.9 latencies
+ * of both protocols:
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar NameTransportBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(64)
+@Fork(1)
+public class NameTransportBenchmark {
+
+    @Param({"http_1_1", "h2c"})
+    public String protocol;
+
+    /**
+     * Maximum number of HTTP/1.1 connections to the name service.
+     */
+    @Param({"2", "50"})
+    public int connections;
+
+    /**
+     * Processing time of the name service, in milliseconds.
+     */
+    @Param({"0", "5"})
+    public int delay;
+
+    private Tomcat nameServer;
+
+    private ScheduledExecutorService scheduler;
+
+    private CloseableHttpAsyncClient httpClient;
+
+    private NameClientConfiguration.H2cClientConfiguration h2c;
+
+    private NameService nameService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, LifecycleException {
+        nameServer = new Tomcat();
+        nameServer.setBaseDir(Files.createTempDirectory("name-server").toString());
+        Connector connector = new Connector("org.apache.coyote.http11.Http11NioProtocol");
+        connector.setPort(0);
+        connector.addUpgradeProtocol(new Http2Protocol());
+        nameServer.getService().addConnector(connector);
+        nameServer.setConnector(connector);
+        Context context = nameServer.addContext("", null);
+        Tomcat.addServlet(context, "name", new NameServlet(delay));
+        context.addServletMappingDecoded("/api/name", "name");
+        nameServer.start();
+
+        NameServiceProperties properties = new NameServiceProperties();
+        properties.setHost("http://localhost:" + connector.getLocalPort());
+        properties.getClient().setMaxPerRoute(connections);
+        properties.getClient().setMaxTotal(connections);
+        // measure the transport, not the breaker
+        properties.getBreaker().setFailureRateThreshold(100);
+        properties.getBreaker().setSlowCallRateThreshold(100);
+
+        NameClientConfiguration configuration = new NameClientConfiguration();
+        scheduler = configuration.nameScheduler();
+        AsyncRestTemplate restTemplate;
+        if ("h2c".equals(protocol)) {
+            h2c = new NameClientConfiguration.H2cClientConfiguration();
+            restTemplate = h2c.nameRestTemplate(properties);
+        } else {
+            httpClient = configuration.nameHttpClient(configuration.nameConnectionManager(properties), scheduler,
+                    properties);
+            restTemplate = configuration.nameRestTemplate(httpClient);
+        }
+        nameService = new NameService(restTemplate, scheduler, properties);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, LifecycleException {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        if (h2c != null) {
+            h2c.shutdown();
+        }
+        scheduler.shutdownNow();
+        nameServer.stop();
+        nameServer.destroy();
+    }
+
+    @Benchmark
+    public String getName() throws Exception {
+        return nameService.getName("benchmark", null).get();
+    }
+
+    private static final class NameServlet extends HttpServlet {
+
+        private static final byte[] NAME = "World from benchmark".getBytes(StandardCharsets.UTF_8);
+
+        private final int delay;
+
+        NameServlet(int delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            response.setContentType("text/plain;charset=UTF-8");
+            response.setContentLength(NAME.length);
+            response.getOutputStream().write(NAME);
+        }
+    }
+}
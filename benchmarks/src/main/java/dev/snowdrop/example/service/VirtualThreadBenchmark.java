@@ -0,0 +1,187 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import dev.snowdrop.example.common.VirtualThreadCustomizer;
+import org.apache.catalina.core.StandardContext;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.context.embedded.EmbeddedServletContainer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Time to serve a burst of {@code delay=150} name requests, as the "Simulate load" checkbox sends them, with the
+ * processing delay slept on the request thread of an embedded Tomcat: on its default pool of 200 platform threads, or
+ * on a virtual thread per request set up by the {@link VirtualThreadCustomizer} of
+ * {@code spring.threads.virtual.enabled=true}.
+ * <p>
+ * Each request takes 150 to 350 ms, so a burst can't take less than 350 ms; the platform pool needs about
+ * {@code requests / 200 * 250} ms. The virtual threads need Java 24, before that Tomcat pins them to as many carrier
+ * threads as there are CPUs:
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar VirtualThreadBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    /**
+     * Number of concurrent requests in a burst, each on its own connection.
+     */
+    @Param({"1000", "5000"})
+    public int requests;
+
+    private NameEventBroadcaster events;
+
+    private NameController controller;
+
+    private VirtualThreadCustomizer customizer;
+
+    private EmbeddedServletContainer nameServer;
+
+    private CloseableHttpAsyncClient httpClient;
+
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = new NameEventBroadcaster(300000, 64, 1024, 2);
+        controller = new NameController(events, false, 1);
+
+        TomcatEmbeddedServletContainerFactory factory = new TomcatEmbeddedServletContainerFactory(0);
+        // the burst opens all its connections at once, far more than the default backlog of 100
+        factory.addConnectorCustomizers(connector -> connector.setAttribute("acceptCount", requests));
+        // stopping would otherwise clear JDK caches by reflection, which Java 16 and later deny
+        factory.addContextCustomizers(context -> {
+            StandardContext standardContext = (StandardContext) context;
+            standardContext.setClearReferencesObjectStreamClassCaches(false);
+            standardContext.setClearReferencesRmiTargets(false);
+            standardContext.setClearReferencesThreadLocals(false);
+        });
+        if ("virtual".equals(threads)) {
+            customizer = new VirtualThreadCustomizer();
+            if (!customizer.isEnabled()) {
+                throw new IllegalStateException("Virtual threads need Java 24");
+            }
+            customizer.customize(factory);
+        }
+        nameServer = factory.getEmbeddedServletContainer(servletContext ->
+                servletContext.addServlet("name", new DelayedNameServlet(controller)).addMapping("/api/name"));
+        nameServer.start();
+        url = "http://localhost:" + nameServer.getPort() + "/api/name?delay=150";
+
+        httpClient = HttpAsyncClients.custom()
+                .setMaxConnTotal(requests)
+                .setMaxConnPerRoute(requests)
+                .build();
+        httpClient.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        httpClient.close();
+        nameServer.stop();
+        if (customizer != null) {
+            customizer.destroy();
+        }
+        controller.shutdown();
+        events.shutdown();
+    }
+
+    @Benchmark
+    public long burst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(requests);
+        FutureCallback<HttpResponse> callback = new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                done.countDown();
+            }
+
+            @Override
+            public void failed(Exception e) {
+                done.countDown();
+            }
+
+            @Override
+            public void cancelled() {
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < requests; i++) {
+            httpClient.execute(new HttpGet(url), callback);
+        }
+        done.await();
+        return done.getCount();
+    }
+
+    /**
+     * The delayed name endpoint without Spring MVC in front, so the burst measures the request threads.
+     */
+    private static final class DelayedNameServlet extends HttpServlet {
+
+        private final NameController controller;
+
+        DelayedNameServlet(NameController controller) {
+            this.controller = controller;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            ResponseEntity<?> name = (ResponseEntity<?>) controller
+                    .getDelayedName(request.getParameter("from"), request.getParameter("delay")).getResult();
+            byte[] body = String.valueOf(name.getBody()).getBytes(StandardCharsets.UTF_8);
+            response.setContentType("text/plain;charset=UTF-8");
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Rate limits calls per {@code from} caller, answering 429 before the controller runs.
+ * <p>
+ * Every caller gets a token bucket holding {@code burst} tokens and refilled at {@code rate} tokens per second. A
+ * bucket is a single timestamp updated with a CAS: the time at which it will be full again. Buckets idle for
+ * {@code idle-timeout} milliseconds are full anyway and are evicted, and at most {@code max-callers} buckets are kept;
+ * the least used are evicted first, which only ever lets a caller start over with a full bucket. Callers without a
+ * {@code from} share one bucket.
+ */
+public class CallerRateLimiter extends HandlerInterceptorAdapter implements PublicMetrics {
+
+    private static final String NO_FROM = "";
+
+    private static final int TOP_CALLERS = 10;
+
+    // callers choose their name, keep what ends up in metric names short and plain
+    private static final int MAX_CALLER_LENGTH = 32;
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final String metricPrefix;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final Cache<String, Bucket> buckets;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param metricPrefix prefix of the metric names, {@code greeting} for {@code greeting.rate-limit.*}
+     * @param rate tokens added to a bucket per second
+     * @param burst size of a bucket
+     * @param idleTimeout milliseconds after which an unused bucket is evicted
+     * @param maxCallers maximum number of buckets kept
+     */
+    public CallerRateLimiter(String metricPrefix, double rate, int burst, long idleTimeout, long maxCallers) {
+        this.metricPrefix = metricPrefix + ".rate-limit.";
+        this.intervalNanos = Math.max(1, Math.round(SECOND / rate));
+        this.burstNanos = intervalNanos * burst;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxCallers)
+                // evicting a bucket before it is full again would hand out a free burst
+                .expireAfterAccess(Math.max(TimeUnit.MILLISECONDS.toNanos(idleTimeout), burstNanos),
+                        TimeUnit.NANOSECONDS)
+                .build();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // an async response is dispatched a second time, it already paid for its token
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        String from = request.getParameter("from");
+        long now = System.nanoTime();
+        Bucket bucket = buckets.get(from != null ? from : NO_FROM, key -> new Bucket(now));
+        long wait = bucket.tryAcquire(now);
+        if (wait == 0) {
+            return true;
+        }
+        bucket.rejected.incrementAndGet();
+        rejected.increment();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", Long.toString((wait + SECOND - 1) / SECOND));
+        return false;
+    }
+
+    /**
+     * Exposes the number of tracked callers, the rejected calls and the callers with the most rejected calls on the
+     * actuator {@code /metrics} endpoint.
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(metricPrefix + "callers", buckets.estimatedSize()));
+        metrics.add(new Metric<>(metricPrefix + "rejected", rejected.sum()));
+
+        // only the top callers, there may be millions of them
+        Comparator<Metric<Long>> byValue = Comparator.comparingLong(Metric::getValue);
+        PriorityQueue<Metric<Long>> top = new PriorityQueue<>(TOP_CALLERS + 1, byValue);
+        buckets.asMap().forEach((from, bucket) -> {
+            long count = bucket.rejected.get();
+            if (count > 0) {
+                top.add(new Metric<>(metricPrefix + "rejected." + metricName(from), count));
+                if (top.size() > TOP_CALLERS) {
+                    top.poll();
+                }
+            }
+        });
+        metrics.addAll(top);
+        return metrics;
+    }
+
+    /**
+     * @return The caller as a metric name segment: letters, digits, {@code -} and {@code _} only, at most
+     *         {@value #MAX_CALLER_LENGTH} characters, and a hash of the whole name if anything had to go.
+     */
+    static String metricName(String from) {
+        if (from.isEmpty()) {
+            return "anonymous";
+        }
+        boolean changed = from.length() > MAX_CALLER_LENGTH;
+        StringBuilder name = new StringBuilder(MAX_CALLER_LENGTH + 9);
+        for (int i = 0; i < from.length() && name.length() < MAX_CALLER_LENGTH; i++) {
+            char c = from.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_') {
+                name.append(c);
+            } else {
+                name.append('_');
+                changed = true;
+            }
+        }
+        // so that distinct callers don't end up with the same name
+        return changed ? name.append('-').append(Integer.toHexString(from.hashCode())).toString() : name.toString();
+    }
+
+    /**
+     * Token bucket of one caller, stored as the time at which it is full again (GCRA).
+     */
+    private final class Bucket {
+
+        private final AtomicLong fullAt;
+        private final AtomicLong rejected = new AtomicLong();
+
+        Bucket(long now) {
+            this.fullAt = new AtomicLong(now);
+        }
+
+        /**
+         * @return 0 if a token was taken, otherwise nanoseconds until one is available
+         */
+        long tryAcquire(long now) {
+            while (true) {
+                long current = fullAt.get();
+                long next = (current - now < 0 ? now : current) + intervalNanos;
+                long wait = next - now - burstNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.common;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Marks the application beans lazy, so a service listens as soon as possible and the first requests create the beans
+ * they use.
+ * <p>
+ * Some beans are left eager, as their cost belongs to startup or they must run before anybody asks for them:
+ * infrastructure beans, beans whose definition says {@code @Lazy} either way, actuator {@link PublicMetrics},
+ * executors, and beans with {@link Scheduled} methods.
+ */
+public class LazyInitialization implements BeanFactoryPostProcessor {
+
+    private static final Class<?>[] EAGER_TYPES = { PublicMetrics.class, Executor.class };
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            if (definition.getRole() == BeanDefinition.ROLE_APPLICATION && !isExplicit(definition)
+                    && !isEager(typeOf(definition, beanFactory.getBeanClassLoader()))) {
+                definition.setLazyInit(true);
+            }
+        }
+    }
+
+    private static boolean isExplicit(BeanDefinition definition) {
+        AnnotatedTypeMetadata metadata = metadataOf(definition);
+        return metadata != null && metadata.isAnnotated(Lazy.class.getName());
+    }
+
+    private static boolean isEager(Class<?> type) {
+        if (type == null) {
+            return false;
+        }
+        for (Class<?> eagerType : EAGER_TYPES) {
+            if (eagerType.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+        for (Method method : ReflectionUtils.getUniqueDeclaredMethods(type)) {
+            if (AnnotationUtils.findAnnotation(method, Scheduled.class) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The class of the bean, or the return type of its {@code @Bean} method, without creating anything; null
+     *         when the definition doesn't tell.
+     */
+    private static Class<?> typeOf(BeanDefinition definition, ClassLoader classLoader) {
+        String typeName = definition.getBeanClassName();
+        if (definition instanceof AnnotatedBeanDefinition
+                && ((AnnotatedBeanDefinition) definition).getFactoryMethodMetadata() != null) {
+            typeName = ((AnnotatedBeanDefinition) definition).getFactoryMethodMetadata().getReturnTypeName();
+        }
+        if (typeName == null || !ClassUtils.isPresent(typeName, classLoader)) {
+            return null;
+        }
+        return ClassUtils.resolveClassName(typeName, classLoader);
+    }
+
+    /**
+     * @return The annotations of the {@code @Bean} method, or of the class of a scanned bean.
+     */
+    private static AnnotatedTypeMetadata metadataOf(BeanDefinition definition) {
+        if (!(definition instanceof AnnotatedBeanDefinition)) {
+            return null;
+        }
+        AnnotatedBeanDefinition annotated = (AnnotatedBeanDefinition) definition;
+        return annotated.getFactoryMethodMetadata() != null ? annotated.getFactoryMethodMetadata()
+                : annotated.getMetadata();
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Live counts of passed, fallback and failed greetings with their latencies, over a sliding window of the last
+ * {@code windowSeconds} seconds, shared by any number of concurrent writers.
+ * <p>
+ * The window is a ring of one-second slots. Every count and latency bucket of a slot is a {@link LongAdder}, which
+ * spreads concurrent increments over striped cells instead of contending on one memory location, and a slot is
+ * replaced with a CAS when a new second starts, so recording never takes a lock. Latencies fall into four buckets per
+ * power of two of microseconds, so percentiles are the upper bound of their bucket: at most 25% above the real value.
+ * <p>
+ * Only the JDK is used, so the integration tests and the load tools can record with it too.
+ */
+public final class OutcomeStatistics {
+
+    public enum Outcome {
+        /**
+         * A greeting with a name from the name service.
+         */
+        PASSED,
+        /**
+         * A greeting with the fallback name.
+         */
+        FALLBACK,
+        /**
+         * No greeting at all.
+         */
+        ERROR
+    }
+
+    private static final int SUB_BUCKETS = 4;
+
+    // latencies from 2^31 microseconds, about 36 minutes, on are counted in the last bucket
+    private static final int MAX_EXPONENT = 31;
+
+    static final int BUCKETS = (MAX_EXPONENT - 1) * SUB_BUCKETS;
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final int windowSeconds;
+    private final LongSupplier nanoClock;
+    private final long origin;
+    private final AtomicReferenceArray<Slot> slots;
+    private final LongAdder[] totals = new LongAdder[Outcome.values().length];
+
+    public OutcomeStatistics(int windowSeconds) {
+        this(windowSeconds, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock the time source, {@link System#nanoTime()} unless in tests
+     */
+    public OutcomeStatistics(int windowSeconds, LongSupplier nanoClock) {
+        if (windowSeconds < 1) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSeconds);
+        }
+        this.windowSeconds = windowSeconds;
+        this.nanoClock = nanoClock;
+        this.origin = nanoClock.getAsLong();
+        this.slots = new AtomicReferenceArray<>(windowSeconds);
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = new LongAdder();
+        }
+    }
+
+    public void record(Outcome outcome, long latencyNanos) {
+        totals[outcome.ordinal()].increment();
+        slot(currentSecond()).record(outcome, latencyNanos);
+    }
+
+    /**
+     * @return Number of calls with this outcome since the statistics were created, regardless of the window.
+     */
+    public long getTotalCount(Outcome outcome) {
+        return totals[outcome.ordinal()].sum();
+    }
+
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    /**
+     * @return The calls of the whole window.
+     */
+    public Snapshot snapshot() {
+        return snapshot(windowSeconds);
+    }
+
+    /**
+     * @param seconds how many of the latest seconds to include, at most the window; the current second is included
+     *        although it is not over yet
+     */
+    public Snapshot snapshot(int seconds) {
+        int covered = Math.max(1, Math.min(seconds, windowSeconds));
+        long now = currentSecond();
+        long[] counts = new long[totals.length];
+        long[] latencies = new long[BUCKETS];
+        long sumNanos = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            Slot slot = slots.get(i);
+            if (slot != null && now - slot.second < covered && slot.second <= now) {
+                sumNanos += slot.addTo(counts, latencies);
+            }
+        }
+        double elapsedSeconds = Math.min(covered, (double) (nanoClock.getAsLong() - origin) / SECOND);
+        return new Snapshot(covered, Math.max(elapsedSeconds, 1e-3), counts, latencies, sumNanos);
+    }
+
+    /**
+     * @return The second calls are recorded in now, counted from the creation of the statistics.
+     */
+    public long getCurrentSecond() {
+        return currentSecond();
+    }
+
+    /**
+     * @param second counted from the creation of the statistics, see {@link #getCurrentSecond()}
+     * @return The calls of that second, none once it left the window.
+     */
+    public Snapshot snapshotOf(long second) {
+        long[] counts = new long[totals.length];
+        long[] latencies = new long[BUCKETS];
+        long sumNanos = 0;
+        Slot slot = second < 0 ? null : slots.get((int) (second % slots.length()));
+        if (slot != null && slot.second == second) {
+            sumNanos = slot.addTo(counts, latencies);
+        }
+        return new Snapshot(1, 1, counts, latencies, sumNanos);
+    }
+
+    /**
+     * @return Nanoseconds since the statistics were created.
+     */
+    public long elapsedNanos() {
+        return nanoClock.getAsLong() - origin;
+    }
+
+    private long currentSecond() {
+        return elapsedNanos() / SECOND;
+    }
+
+    private Slot slot(long second) {
+        int index = (int) (second % slots.length());
+        Slot slot = slots.get(index);
+        // a writer stalled for a whole window counts in the newer slot
+        if (slot != null && slot.second >= second) {
+            return slot;
+        }
+        Slot fresh = new Slot(second);
+        while (!slots.compareAndSet(index, slot, fresh)) {
+            slot = slots.get(index);
+            if (slot != null && slot.second >= second) {
+                return slot;
+            }
+        }
+        return fresh;
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(0, micros);
+        }
+        long capped = Math.min(micros, (1L << MAX_EXPONENT) - 1);
+        int exponent = 63 - Long.numberOfLeadingZeros(capped);
+        int sub = (int) (capped >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return (exponent - 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return Smallest latency in microseconds that falls into the bucket.
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 2);
+    }
+
+    /**
+     * One second of calls.
+     */
+    private static final class Slot {
+
+        private final long second;
+        private final LongAdder[] counts = new LongAdder[Outcome.values().length];
+        private final LongAdder[] latencies = new LongAdder[BUCKETS];
+        private final LongAdder sumNanos = new LongAdder();
+
+        Slot(long second) {
+            this.second = second;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new LongAdder();
+            }
+        }
+
+        void record(Outcome outcome, long latencyNanos) {
+            counts[outcome.ordinal()].increment();
+            latencies[bucketOf(TimeUnit.NANOSECONDS.toMicros(latencyNanos))].increment();
+            sumNanos.add(latencyNanos);
+        }
+
+        /**
+         * Adds the calls of this second to the given counts.
+         *
+         * @return Sum of their latencies in nanoseconds.
+         */
+        long addTo(long[] counts, long[] latencies) {
+            for (int outcome = 0; outcome < counts.length; outcome++) {
+                counts[outcome] += this.counts[outcome].sum();
+            }
+            for (int bucket = 0; bucket < latencies.length; bucket++) {
+                latencies[bucket] += this.latencies[bucket].sum();
+            }
+            return sumNanos.sum();
+        }
+    }
+
+    /**
+     * Counts and latencies of the calls of some seconds. Latencies are in milliseconds.
+     */
+    public static final class Snapshot {
+
+        private final int seconds;
+        private final double elapsedSeconds;
+        private final long[] counts;
+        private final long[] latencies;
+        private final long total;
+        private final long sumNanos;
+
+        Snapshot(int seconds, double elapsedSeconds, long[] counts, long[] latencies, long sumNanos) {
+            this.seconds = seconds;
+            this.elapsedSeconds = elapsedSeconds;
+            this.counts = counts;
+            this.latencies = latencies;
+            this.sumNanos = sumNanos;
+            long sum = 0;
+            for (long count : counts) {
+                sum += count;
+            }
+            this.total = sum;
+        }
+
+        public int getSeconds() {
+            return seconds;
+        }
+
+        public long getCount(Outcome outcome) {
+            return counts[outcome.ordinal()];
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * @return Calls per second.
+         */
+        public double getRate() {
+            return total / elapsedSeconds;
+        }
+
+        /**
+         * @return Share of the greetings, errors excluded, that used the fallback name.
+         */
+        public double getFallbackRatio() {
+            long answered = getCount(Outcome.PASSED) + getCount(Outcome.FALLBACK);
+            return answered == 0 ? 0 : (double) getCount(Outcome.FALLBACK) / answered;
+        }
+
+        public double getMeanLatency() {
+            return total == 0 ? 0 : sumNanos / 1e6 / total;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return Upper bound of the bucket holding the given percentile, 0 without calls.
+         */
+        public double getLatency(double percentile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+            long seen = 0;
+            for (int bucket = 0; bucket < latencies.length; bucket++) {
+                seen += latencies[bucket];
+                if (seen >= rank) {
+                    return lowerBound(bucket + 1) / 1000.0;
+                }
+            }
+            return lowerBound(latencies.length) / 1000.0;
+        }
+
+        public byte[] toJson() {
+            return new JsonWriter(256)
+                    .raw("{").name("seconds").number(seconds)
+                    .raw(",").name("passed").number(getCount(Outcome.PASSED))
+                    .raw(",").name("fallback").number(getCount(Outcome.FALLBACK))
+                    .raw(",").name("errors").number(getCount(Outcome.ERROR))
+                    .raw(",").name("rate").number(getRate())
+                    .raw(",").name("fallbackRatio").number(getFallbackRatio())
+                    .raw(",").name("latency")
+                    .raw("{").name("mean").number(getMeanLatency())
+                    .raw(",").name("p50").number(getLatency(50))
+                    .raw(",").name("p90").number(getLatency(90))
+                    .raw(",").name("p99").number(getLatency(99))
+                    .raw(",").name("p999").number(getLatency(99.9))
+                    .raw("}}")
+                    .toByteArray();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.common;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.embedded.ConfigurableEmbeddedServletContainer;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+
+/**
+ * Makes Tomcat run every request on its own virtual thread instead of its pool of 200 platform threads.
+ * <p>
+ * Tomcat 8.5 processes each request inside a {@code synchronized} block. Before Java 24 (JEP 491) that pins the
+ * virtual thread to its carrier until the request is done, so a request blocking in it holds one of the few carrier
+ * threads, as many as there are CPUs, and the requests queue behind them. On older runtimes the platform pool is kept.
+ * From Java 16 on, Spring 4.3 only starts with {@code --add-opens java.base/java.lang=ALL-UNNAMED}.
+ */
+public class VirtualThreadCustomizer implements EmbeddedServletContainerCustomizer, DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadCustomizer.class);
+
+    private final ExecutorService executor = newVirtualThreadExecutor();
+
+    @Override
+    public void customize(ConfigurableEmbeddedServletContainer container) {
+        if (executor != null && container instanceof TomcatEmbeddedServletContainerFactory) {
+            ((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(connector -> {
+                ProtocolHandler handler = connector.getProtocolHandler();
+                if (handler instanceof AbstractProtocol) {
+                    ((AbstractProtocol<?>) handler).setExecutor(executor);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return Whether Tomcat runs the requests on virtual threads, {@code false} before Java 24.
+     */
+    public boolean isEnabled() {
+        return executor != null;
+    }
+
+    @Override
+    public void destroy() {
+        // Tomcat only stops the executors it created itself
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The project is still built for Java 8, hence the reflection.
+     *
+     * @return Executor starting a virtual thread per task, or {@code null} before Java 24.
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        if (javaVersion() < 24) {
+            LOG.warn("Tomcat pins virtual threads to their carrier before Java 24, running on {}; "
+                    + "keeping the platform thread pool", System.getProperty("java.version"));
+            return null;
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create a virtual thread executor", e);
+        }
+    }
+
+    /**
+     * @return The feature release, {@code 8} for Java 8 whose specification version is {@code 1.8}.
+     */
+    static int javaVersion() {
+        String version = System.getProperty("java.specification.version");
+        return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+    }
+}
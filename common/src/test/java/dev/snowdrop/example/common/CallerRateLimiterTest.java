@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.servlet.DispatcherType;
+
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ */
+public class CallerRateLimiterTest {
+
+    private final CallerRateLimiter limiter = new CallerRateLimiter("greeting", 1, 2, 60000, 1000);
+
+    @Test
+    public void testRejectsBeyondBurst() {
+        assertThat(greet("noisy").getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(greet("noisy").getStatus()).isEqualTo(HttpStatus.OK.value());
+
+        MockHttpServletResponse rejected = greet("noisy");
+
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+        assertThat(greet("quiet").getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(limiter.metrics()).extracting("name").contains("greeting.rate-limit.rejected.noisy");
+    }
+
+    @Test
+    public void testCallerMetricNamesArePlainAndShort() {
+        assertThat(CallerRateLimiter.metricName("")).isEqualTo("anonymous");
+        assertThat(CallerRateLimiter.metricName("noisy-caller_1")).isEqualTo("noisy-caller_1");
+        assertThat(CallerRateLimiter.metricName("a.b c")).matches("a_b_c-[0-9a-f]+");
+        assertThat(CallerRateLimiter.metricName("a.b c")).isNotEqualTo(CallerRateLimiter.metricName("a b.c"));
+
+        StringBuilder huge = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            huge.append('x');
+        }
+        assertThat(CallerRateLimiter.metricName(huge.toString())).matches("x{32}-[0-9a-f]+");
+    }
+
+    @Test
+    public void testAsyncDispatchIsFree() {
+        greet("caller");
+        greet("caller");
+
+        MockHttpServletRequest dispatch = request("caller");
+        dispatch.setDispatcherType(DispatcherType.ASYNC);
+
+        assertThat(limiter.preHandle(dispatch, new MockHttpServletResponse(), null)).isTrue();
+    }
+
+    private MockHttpServletResponse greet(String from) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        limiter.preHandle(request(from), response, null);
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String from) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/greeting");
+        request.setParameter("from", from);
+        return request;
+    }
+}
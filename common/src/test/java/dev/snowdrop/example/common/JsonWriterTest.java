@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+/**
+ */
+public class JsonWriterTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testEscapesStrings() throws Exception {
+        String value = "Hello, \"World\" \\ from\tgrüße € 😀\u0001";
+
+        byte[] json = new JsonWriter(4).string(value).toByteArray();
+
+        assertThat(mapper.readValue(json, String.class)).isEqualTo(value);
+    }
+
+    @Test
+    public void testWritesNonFiniteNumbersAsNull() throws Exception {
+        byte[] json = new JsonWriter().raw("[").number(Double.NaN).raw(",").number(Double.POSITIVE_INFINITY)
+                .raw(",").number(Float.NEGATIVE_INFINITY).raw(",").number(1.5).raw("]").toByteArray();
+
+        assertThat(mapper.readValue(json, Double[].class)).containsExactly(null, null, null, 1.5);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ */
+public class LazyInitializationTest {
+
+    private static final List<String> CREATED = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setup() {
+        CREATED.clear();
+    }
+
+    @Test
+    public void testDefersPlainBeansOnly() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(Beans.class)) {
+            assertThat(CREATED).containsOnly("metrics", "executor", "scheduled", "eager");
+
+            context.getBean("plain");
+            assertThat(CREATED).contains("plain");
+        }
+    }
+
+    @Configuration
+    static class Beans {
+
+        @Bean
+        public static BeanFactoryPostProcessor lazyInitialization() {
+            return new LazyInitialization();
+        }
+
+        @Bean
+        public Object plain() {
+            return created("plain", new Object());
+        }
+
+        @Bean
+        public PublicMetrics metrics() {
+            return created("metrics", new PublicMetrics() {
+                @Override
+                public Collection<Metric<?>> metrics() {
+                    return Collections.emptyList();
+                }
+            });
+        }
+
+        @Bean(destroyMethod = "shutdown")
+        public ExecutorService executor() {
+            return created("executor", Executors.newSingleThreadExecutor());
+        }
+
+        @Bean
+        public Poller scheduled() {
+            return created("scheduled", new Poller());
+        }
+
+        @Bean
+        @Lazy(false)
+        public Object eager() {
+            return created("eager", new Object());
+        }
+
+        private static <T> T created(String name, T bean) {
+            CREATED.add(name);
+            return bean;
+        }
+    }
+
+    static class Poller {
+
+        @Scheduled(fixedRate = 1000)
+        public void poll() {
+        }
+    }
+}
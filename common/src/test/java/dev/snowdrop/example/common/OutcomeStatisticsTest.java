@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ */
+public class OutcomeStatisticsTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testCountsOutcomesInWindow() {
+        OutcomeStatistics statistics = new OutcomeStatistics(10, clock::get);
+
+        statistics.record(OutcomeStatistics.Outcome.PASSED, millis(5));
+        statistics.record(OutcomeStatistics.Outcome.FALLBACK, millis(5));
+        statistics.record(OutcomeStatistics.Outcome.FALLBACK, millis(5));
+        statistics.record(OutcomeStatistics.Outcome.ERROR, millis(5));
+
+        OutcomeStatistics.Snapshot snapshot = statistics.snapshot();
+        assertThat(snapshot.getCount(OutcomeStatistics.Outcome.PASSED)).isEqualTo(1);
+        assertThat(snapshot.getCount(OutcomeStatistics.Outcome.FALLBACK)).isEqualTo(2);
+        assertThat(snapshot.getCount(OutcomeStatistics.Outcome.ERROR)).isEqualTo(1);
+        assertThat(snapshot.getTotal()).isEqualTo(4);
+        assertThat(snapshot.getFallbackRatio()).isEqualTo(2.0 / 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmptyWindow() {
+        new OutcomeStatistics(0, clock::get);
+    }
+
+    @Test
+    public void testForgetsSecondsOutsideWindow() {
+        OutcomeStatistics statistics = new OutcomeStatistics(10, clock::get);
+        statistics.record(OutcomeStatistics.Outcome.PASSED, millis(5));
+
+        advance(5);
+        statistics.record(OutcomeStatistics.Outcome.FALLBACK, millis(5));
+        assertThat(statistics.snapshot().getTotal()).isEqualTo(2);
+        assertThat(statistics.snapshot(3).getTotal()).isEqualTo(1);
+
+        advance(5);
+        assertThat(statistics.snapshot().getTotal()).isEqualTo(1);
+
+        // the slot of the first second is reused
+        advance(10);
+        statistics.record(OutcomeStatistics.Outcome.ERROR, millis(5));
+        OutcomeStatistics.Snapshot snapshot = statistics.snapshot();
+        assertThat(snapshot.getTotal()).isEqualTo(1);
+        assertThat(snapshot.getCount(OutcomeStatistics.Outcome.ERROR)).isEqualTo(1);
+
+        assertThat(statistics.getTotalCount(OutcomeStatistics.Outcome.PASSED)).isEqualTo(1);
+        assertThat(statistics.getTotalCount(OutcomeStatistics.Outcome.FALLBACK)).isEqualTo(1);
+        assertThat(statistics.getTotalCount(OutcomeStatistics.Outcome.ERROR)).isEqualTo(1);
+    }
+
+    @Test
+    public void testLatencyPercentilesWithinBucketPrecision() {
+        OutcomeStatistics statistics = new OutcomeStatistics(10, clock::get);
+        for (int i = 1; i <= 1000; i++) {
+            statistics.record(OutcomeStatistics.Outcome.PASSED, millis(i));
+        }
+
+        OutcomeStatistics.Snapshot snapshot = statistics.snapshot();
+        assertThat(snapshot.getLatency(50)).isBetween(500.0, 625.0);
+        assertThat(snapshot.getLatency(99)).isBetween(990.0, 1238.0);
+        assertThat(snapshot.getMeanLatency()).isEqualTo(500.5);
+    }
+
+    @Test
+    public void testBucketsAreContiguous() {
+        for (int bucket = 0; bucket < OutcomeStatistics.BUCKETS; bucket++) {
+            long lower = OutcomeStatistics.lowerBound(bucket);
+            assertThat(OutcomeStatistics.bucketOf(lower)).isEqualTo(bucket);
+            assertThat(OutcomeStatistics.bucketOf(OutcomeStatistics.lowerBound(bucket + 1) - 1)).isEqualTo(bucket);
+        }
+        assertThat(OutcomeStatistics.bucketOf(Long.MAX_VALUE)).isEqualTo(OutcomeStatistics.BUCKETS - 1);
+    }
+
+    @Test
+    public void testConcurrentWritersLoseNothing() throws InterruptedException {
+        OutcomeStatistics statistics = new OutcomeStatistics(60);
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Thread writer = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    statistics.record(OutcomeStatistics.Outcome.PASSED, j);
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertThat(statistics.getTotalCount(OutcomeStatistics.Outcome.PASSED)).isEqualTo(160000);
+        assertThat(statistics.snapshot().getTotal()).isEqualTo(160000);
+    }
+
+    private void advance(int seconds) {
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
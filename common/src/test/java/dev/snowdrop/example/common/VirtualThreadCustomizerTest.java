@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.context.embedded.EmbeddedServletContainer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.util.StreamUtils;
+
+/**
+ */
+public class VirtualThreadCustomizerTest {
+
+    private final VirtualThreadCustomizer customizer = new VirtualThreadCustomizer();
+
+    private EmbeddedServletContainer container;
+
+    @After
+    public void tearDown() {
+        if (container != null) {
+            container.stop();
+        }
+        customizer.destroy();
+    }
+
+    @Test
+    public void testTomcatServesRequestsOnVirtualThreadsFromJava24() throws Exception {
+        TomcatEmbeddedServletContainerFactory factory = new TomcatEmbeddedServletContainerFactory(0);
+        customizer.customize(factory);
+        container = factory.getEmbeddedServletContainer(servletContext ->
+                servletContext.addServlet("thread", new ThreadServlet()).addMapping("/thread"));
+        container.start();
+
+        String virtual;
+        try (InputStream in = new URL("http://localhost:" + container.getPort() + "/thread").openStream()) {
+            virtual = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+
+        assertThat(customizer.isEnabled()).isEqualTo(VirtualThreadCustomizer.javaVersion() >= 24);
+        assertThat(virtual).isEqualTo(Boolean.toString(customizer.isEnabled()));
+    }
+
+    /**
+     * Tells whether it runs on a virtual thread.
+     */
+    private static final class ThreadServlet extends HttpServlet {
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            boolean virtual;
+            try {
+                virtual = (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+            } catch (ReflectiveOperationException e) {
+                virtual = false;
+            }
+            response.getWriter().print(virtual);
+        }
+    }
+}
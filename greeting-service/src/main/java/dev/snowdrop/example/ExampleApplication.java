@@ -16,8 +16,13 @@
 
 package dev.snowdrop.example;
 
+import dev.snowdrop.example.common.LazyInitialization;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Profile;
 
 /**
  * Entry point to the application.
@@ -26,7 +31,21 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 public class ExampleApplication {
 
     public static void main(String[] args) {
-        SpringApplication.run(ExampleApplication.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(ExampleApplication.class, args);
+        // training run of the class data sharing archive: stop once everything is loaded
+        if (context.getEnvironment().getProperty("example.training-run", Boolean.class, false)) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    /**
+     * With the {@code fast-startup} profile, most beans are only created when first used, so the service listens as soon
+     * as possible and the first requests pay for the rest.
+     */
+    @Bean
+    @Profile("fast-startup")
+    public static BeanFactoryPostProcessor lazyInitialization() {
+        return new LazyInitialization();
     }
 
 }
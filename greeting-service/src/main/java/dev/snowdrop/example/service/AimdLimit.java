@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Additive-increase/multiplicative-decrease limit.
+ * <p>
+ * The limit grows by one for every successful call made while at least half of the limit was in use, and is multiplied
+ * by the backoff ratio whenever a call is dropped or takes longer than the timeout.
+ */
+class AimdLimit implements ConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long timeoutNanos;
+
+    private final AtomicInteger limit;
+    private volatile long rttNanos;
+
+    AimdLimit(NameServiceProperties.Limiter config, int maxLimit) {
+        this.minLimit = config.getMinLimit();
+        this.maxLimit = maxLimit;
+        this.backoffRatio = config.getBackoffRatio();
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getTimeout());
+        this.limit = new AtomicInteger(Math.min(maxLimit, config.getInitialLimit()));
+    }
+
+    @Override
+    public int getLimit() {
+        return limit.get();
+    }
+
+    @Override
+    public void onSample(long rttNanos, int inFlight, boolean dropped) {
+        this.rttNanos = rttNanos;
+        if (dropped || rttNanos > timeoutNanos) {
+            limit.updateAndGet(current -> Math.max(minLimit, (int) (current * backoffRatio)));
+        } else {
+            limit.updateAndGet(current -> inFlight * 2 >= current ? Math.min(maxLimit, current + 1) : current);
+        }
+    }
+
+    @Override
+    public double getRtt() {
+        return rttNanos / 1e6;
+    }
+
+    @Override
+    public double getBaselineRtt() {
+        return 0;
+    }
+}
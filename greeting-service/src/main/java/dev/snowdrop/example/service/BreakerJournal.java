@@ -0,0 +1,420 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.annotation.PreDestroy;
+
+import dev.snowdrop.example.common.JsonWriter;
+import dev.snowdrop.example.common.OutcomeStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Append-only journal of the breaker transitions and of the greetings served every second, so an incident can be
+ * reconstructed after the fact: when the breaker opened, how long it stayed open and how many fallbacks were served.
+ * <p>
+ * The journal is a series of memory-mapped segment files of {@code segment-size} bytes in {@code journal.directory},
+ * named after the time they were started. The oldest are deleted beyond {@code max-segments}. A segment starts
+ * with a header record, followed by fixed-size records:
+ * <pre>
+ * offset  0: long time in epoch milliseconds, 0 past the last record
+ *         8: int  type, 1 for a transition, 2 for a second of greetings
+ *        12: int  new state ordinal, or passed greetings
+ *        16: int  fallback greetings
+ *        20: int  failed greetings
+ *        24: int  p50 latency in microseconds
+ *        28: int  p99 latency in microseconds
+ * </pre>
+ * Only the {@code breaker-journal} thread writes to the file. A transition, reported on the thread that caused it,
+ * is a CAS into a small array of pending transitions, which that thread drains every second before appending the
+ * greetings of every second that is over since its last run, so the request path neither blocks nor allocates.
+ * Records are in the page cache as soon as they are written, so they survive a crash of the service but not of the
+ * machine. A segment is forced to disk once it is full and on shutdown. After a restart, records are appended to the
+ * last segment as long as it has room.
+ */
+@Component
+@ConditionalOnProperty("journal.enabled")
+// created at startup even with the fast-startup lazy beans: it must listen before anybody queries it
+@Lazy(false)
+public class BreakerJournal implements PublicMetrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BreakerJournal.class);
+
+    static final int RECORD_SIZE = 32;
+
+    private static final long MAGIC = 0x42524b4a524e4c31L;
+
+    private static final int TRANSITION = 1;
+
+    private static final int SECOND = 2;
+
+    private static final String PREFIX = "breaker-";
+
+    private static final String SUFFIX = ".journal";
+
+    // transitions are rare: the breaker stays open for a while, this is plenty for one second
+    private static final int PENDING_TRANSITIONS = 64;
+
+    private static final int READ_BUFFER_RECORDS = 1024;
+
+    private final File directory;
+    private final long segmentSize;
+    private final int maxSegments;
+    private final OutcomeStatistics statistics;
+    private final LongSupplier wallClock;
+    private final long originMillis;
+    private final long lateMillis;
+
+    private final AtomicLongArray pendingTransitions = new AtomicLongArray(PENDING_TRANSITIONS);
+    private final AtomicLong transitions = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final long[] drained = new long[PENDING_TRANSITIONS];
+
+    private final ScheduledExecutorService writer;
+
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private long lastSecond;
+    private volatile long records;
+
+    /**
+     * @param directory where the segments are kept
+     * @param segmentSize bytes per segment, 16 MB or half a million records by default
+     * @param maxSegments segments kept, the oldest are deleted
+     */
+    @Autowired
+    public BreakerJournal(NameService nameService, OutcomeStatistics statistics,
+            @Value("${journal.directory:journal}") String directory,
+            @Value("${journal.segment-size:16777216}") long segmentSize,
+            @Value("${journal.max-segments:10}") int maxSegments) throws IOException {
+        this(new File(directory), segmentSize, maxSegments, statistics, System::currentTimeMillis);
+        nameService.addStateListener(this::onTransition);
+        writer.scheduleAtFixedRate(this::flushQuietly, 1, 1, TimeUnit.SECONDS);
+    }
+
+    BreakerJournal(File directory, long segmentSize, int maxSegments, OutcomeStatistics statistics,
+            LongSupplier wallClock) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = Math.max(2, segmentSize / RECORD_SIZE) * RECORD_SIZE;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.statistics = statistics;
+        this.wallClock = wallClock;
+        // when the first second of the statistics started
+        this.originMillis = wallClock.getAsLong() - TimeUnit.NANOSECONDS.toMillis(statistics.elapsedNanos());
+        this.lastSecond = statistics.getCurrentSecond() - 1;
+        // a second is written once it is over, and at the latest while it is in the window
+        this.lateMillis = TimeUnit.SECONDS.toMillis(statistics.getWindowSeconds() + 1);
+        this.writer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "breaker-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!reopenLast()) {
+            roll();
+        }
+    }
+
+    void onTransition(CircuitBreaker.State state) {
+        long transition = wallClock.getAsLong() << 2 | state.ordinal();
+        int index = (int) (transitions.getAndIncrement() % PENDING_TRANSITIONS);
+        if (!pendingTransitions.compareAndSet(index, 0, transition)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Appends the pending transitions and the greetings of every second that is over and not written yet, so a late
+     * or early run of the writer neither skips nor repeats a second. Called by the writer thread only.
+     */
+    void flush() throws IOException {
+        appendTransitions();
+
+        long completed = statistics.getCurrentSecond() - 1;
+        // after a long pause, only the seconds still in the window are known
+        long first = Math.max(lastSecond + 1, completed - statistics.getWindowSeconds() + 1);
+        for (long second = first; second <= completed; second++) {
+            OutcomeStatistics.Snapshot snapshot = statistics.snapshotOf(second);
+            if (snapshot.getTotal() > 0) {
+                append(originMillis + TimeUnit.SECONDS.toMillis(second), SECOND,
+                        (int) snapshot.getCount(OutcomeStatistics.Outcome.PASSED),
+                        (int) snapshot.getCount(OutcomeStatistics.Outcome.FALLBACK),
+                        (int) snapshot.getCount(OutcomeStatistics.Outcome.ERROR),
+                        (int) (snapshot.getLatency(50) * 1000), (int) (snapshot.getLatency(99) * 1000));
+            }
+        }
+        lastSecond = Math.max(lastSecond, completed);
+    }
+
+    private void appendTransitions() throws IOException {
+        int count = 0;
+        for (int i = 0; i < PENDING_TRANSITIONS; i++) {
+            long transition = pendingTransitions.getAndSet(i, 0);
+            if (transition != 0) {
+                drained[count++] = transition;
+            }
+        }
+        // the time is in the high bits, this puts them in order
+        Arrays.sort(drained, 0, count);
+        for (int i = 0; i < count; i++) {
+            append(drained[i] >>> 2, TRANSITION, (int) (drained[i] & 3), 0, 0, 0, 0);
+        }
+    }
+
+    private void flushQuietly() {
+        flushQuietly(true);
+    }
+
+    private void flushQuietly(boolean seconds) {
+        try {
+            if (seconds) {
+                flush();
+            } else {
+                appendTransitions();
+            }
+        } catch (IOException | RuntimeException e) {
+            // keep the schedule going, the next second may have room again
+            LOG.warn("Cannot write to the breaker journal in {}", directory, e);
+        }
+    }
+
+    private void append(long time, int type, int a, int b, int c, int d, int e) throws IOException {
+        if (segment.remaining() < RECORD_SIZE) {
+            roll();
+        }
+        int position = segment.position();
+        segment.putInt(position + 8, type)
+                .putInt(position + 12, a)
+                .putInt(position + 16, b)
+                .putInt(position + 20, c)
+                .putInt(position + 24, d)
+                .putInt(position + 28, e)
+                // last, a reader stops at the first record without a time
+                .putLong(position, time);
+        segment.position(position + RECORD_SIZE);
+        records++;
+    }
+
+    /**
+     * Maps the last segment again and positions it after its last record, unless it is full or was written with
+     * another segment size or record format.
+     *
+     * @return whether the last segment can take more records
+     */
+    private boolean reopenLast() throws IOException {
+        List<File> segments = segments();
+        if (segments.isEmpty()) {
+            return false;
+        }
+        File file = segments.get(segments.size() - 1);
+        if (file.length() != segmentSize || startOf(file) == Long.MAX_VALUE) {
+            return false;
+        }
+        MappedByteBuffer last = map(file);
+        if (last.getLong(0) != MAGIC || last.getInt(8) != RECORD_SIZE) {
+            return false;
+        }
+        // records are written in order, all those past the last one have no time
+        int low = 1;
+        int high = (int) (segmentSize / RECORD_SIZE);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (last.getLong(middle * RECORD_SIZE) != 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low * RECORD_SIZE + RECORD_SIZE > segmentSize) {
+            return false;
+        }
+        segment = last;
+        segment.position(low * RECORD_SIZE);
+        segmentStart = startOf(file);
+        return true;
+    }
+
+    /**
+     * Starts a segment named after the current time, so a segment only holds records from before the next one starts.
+     */
+    private void roll() throws IOException {
+        if (segment != null) {
+            segment.force();
+        }
+        segmentStart = Math.max(wallClock.getAsLong(), segmentStart + 1);
+        segment = map(new File(directory, PREFIX + segmentStart + SUFFIX));
+        segment.putLong(0, MAGIC).putInt(8, RECORD_SIZE);
+        segment.position(RECORD_SIZE);
+
+        List<File> segments = segments();
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            if (!segments.get(i).delete()) {
+                LOG.warn("Cannot delete the breaker journal segment {}", segments.get(i));
+            }
+        }
+    }
+
+    private MappedByteBuffer map(File file) throws IOException {
+        // the mapping stays valid once the channel is closed
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+                FileChannel channel = randomAccessFile.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    /**
+     * Writes the records from {@code from} to {@code to}, both in epoch milliseconds and inclusive, as one JSON object
+     * per line, segment by segment, without holding more than a buffer of records in memory.
+     */
+    void writeJson(long from, long to, OutputStream out) throws IOException {
+        List<File> segments = segments();
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * READ_BUFFER_RECORDS);
+        JsonWriter json = new JsonWriter();
+        for (int i = 0; i < segments.size(); i++) {
+            // records are written at most lateMillis after their time, and before the next segment starts
+            if (startOf(segments.get(i)) - lateMillis > to
+                    || (i + 1 < segments.size() && startOf(segments.get(i + 1)) < from)) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(segments.get(i).toPath(), StandardOpenOption.READ)) {
+                writeJson(channel, from, to, buffer, json, out);
+            } catch (NoSuchFileException e) {
+                // deleted by a roll meanwhile, it was too old anyway
+            }
+        }
+    }
+
+    private void writeJson(FileChannel channel, long from, long to, ByteBuffer buffer, JsonWriter json,
+            OutputStream out) throws IOException {
+        buffer.clear();
+        if (channel.read(buffer, 0) < RECORD_SIZE || buffer.getLong(0) != MAGIC) {
+            return;
+        }
+        long offset = RECORD_SIZE;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read < RECORD_SIZE) {
+                return;
+            }
+            for (int position = 0; position + RECORD_SIZE <= read; position += RECORD_SIZE) {
+                long time = buffer.getLong(position);
+                if (time == 0) {
+                    return;
+                }
+                if (time >= from && time <= to) {
+                    writeJson(buffer, position, time, json.reset());
+                    json.raw("\n").writeTo(out);
+                }
+            }
+            offset += read - read % RECORD_SIZE;
+        }
+    }
+
+    private static void writeJson(ByteBuffer buffer, int position, long time, JsonWriter json) {
+        json.raw("{").name("time").string(Instant.ofEpochMilli(time).toString());
+        if (buffer.getInt(position + 8) == TRANSITION) {
+            CircuitBreaker.State state = CircuitBreaker.State.values()[buffer.getInt(position + 12)];
+            json.raw(",").name("event").string("transition")
+                    .raw(",").name("state").string(state.name().toLowerCase(Locale.ROOT));
+        } else {
+            json.raw(",").name("event").string("second")
+                    .raw(",").name("passed").number(buffer.getInt(position + 12))
+                    .raw(",").name("fallback").number(buffer.getInt(position + 16))
+                    .raw(",").name("errors").number(buffer.getInt(position + 20))
+                    .raw(",").name("p50").number(buffer.getInt(position + 24) / 1000.0)
+                    .raw(",").name("p99").number(buffer.getInt(position + 28) / 1000.0);
+        }
+        json.raw("}");
+    }
+
+    /**
+     * @return The segment files, oldest first.
+     */
+    private List<File> segments() {
+        List<File> segments = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files != null) {
+            segments.addAll(Arrays.asList(files));
+        }
+        segments.sort((a, b) -> Long.compare(startOf(a), startOf(b)));
+        return segments;
+    }
+
+    private static long startOf(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Exposes the records written and the transitions dropped because too many happened within a second on the
+     * actuator {@code /metrics} endpoint.
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("greeting.journal.records", records),
+                new Metric<>("greeting.journal.dropped", dropped.sum()));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // the current second is not over, only the transitions since the last run may be missing
+        writer.execute(() -> {
+            flushQuietly(false);
+            segment.force();
+        });
+        writer.shutdown();
+        writer.awaitTermination(1, TimeUnit.SECONDS);
+    }
+}
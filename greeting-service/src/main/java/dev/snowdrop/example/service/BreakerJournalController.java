@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Breaker journal controller.
+ */
+@RestController
+@ConditionalOnProperty("journal.enabled")
+public class BreakerJournalController {
+
+    private static final MediaType JSON_LINES = MediaType.parseMediaType("application/x-ndjson;charset=UTF-8");
+
+    private final BreakerJournal journal;
+
+    public BreakerJournalController(BreakerJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Streams the journal records between two times, as epoch milliseconds or ISO-8601 instants, both inclusive.
+     *
+     * @return One JSON object per line, a breaker transition or the greetings served in a second.
+     */
+    @GetMapping("/api/cb-journal")
+    public ResponseEntity<StreamingResponseBody> getJournal(@RequestParam(name = "from", required = false) String from,
+            @RequestParam(name = "to", required = false) String to) {
+        long fromMillis;
+        long toMillis;
+        try {
+            fromMillis = from != null ? parseTime(from) : 0;
+            toMillis = to != null ? parseTime(to) : Long.MAX_VALUE;
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(JSON_LINES)
+                .body(out -> journal.writeJson(fromMillis, toMillis, out));
+    }
+
+    private static long parseTime(String time) {
+        return time.chars().allMatch(Character::isDigit) ? Long.parseLong(time) : Instant.parse(time).toEpochMilli();
+    }
+}
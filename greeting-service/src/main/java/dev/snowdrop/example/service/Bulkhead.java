@@ -0,0 +1,234 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking bulkhead limiting the number of concurrent calls to the name service.
+ * <p>
+ * A call is started right away while fewer calls than the {@link ConcurrencyLimit} are in flight. Otherwise it waits in a
+ * bounded queue for at most {@code maxWait} milliseconds, and is started as soon as an in-flight call completes. Calls
+ * that find the queue full, or that wait too long, complete with the fallback instead. No thread is ever blocked while
+ * waiting.
+ */
+class Bulkhead {
+
+    private final int maxConcurrentCalls;
+    private final ConcurrencyLimit limit;
+    private final int maxQueue;
+    private final long maxWait;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<Waiter<?>> waiting = new ConcurrentLinkedQueue<>();
+    private final LongAdder rejectedCalls = new LongAdder();
+
+    Bulkhead(NameServiceProperties.Bulkhead config, ConcurrencyLimit limit, ScheduledExecutorService scheduler) {
+        this.maxConcurrentCalls = config.getMaxConcurrentCalls();
+        this.limit = limit;
+        this.maxQueue = config.getMaxQueue();
+        this.maxWait = config.getMaxWait();
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Starts the call now or once a slot frees up.
+     *
+     * @param call starts the guarded call
+     * @param fallback provides the result when the call is rejected
+     * @param onCancel run when the call is cancelled while still queued, so that it is neither started nor rejected
+     * @return Future of the call's result, or of the fallback if the call was rejected.
+     */
+    <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call, Supplier<T> fallback, Runnable onCancel) {
+        if (tryAcquire()) {
+            return start(call);
+        }
+
+        if (queued.incrementAndGet() > maxQueue) {
+            queued.decrementAndGet();
+            return reject(fallback);
+        }
+        Waiter<T> waiter = new Waiter<>(call, fallback, onCancel);
+        waiting.add(waiter);
+        waiter.expiry = scheduler.schedule(waiter::expire, maxWait, TimeUnit.MILLISECONDS);
+        // a slot may have been released before we were queued
+        drain();
+        return waiter.result;
+    }
+
+    /**
+     * Feeds the round trip time of a completed call to the concurrency limit.
+     */
+    void onSample(long rttNanos, boolean dropped) {
+        limit.onSample(rttNanos, inFlight.get(), dropped);
+    }
+
+    ConcurrencyLimit getLimit() {
+        return limit;
+    }
+
+    CircuitBreakerState.BulkheadState getMetrics() {
+        return new CircuitBreakerState.BulkheadState(maxConcurrentCalls, limit.getLimit(), inFlight.get(), queued.get(),
+                rejectedCalls.sum());
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit.getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    private void drain() {
+        while (!waiting.isEmpty() && tryAcquire()) {
+            Waiter<?> waiter;
+            do {
+                waiter = waiting.poll();
+            } while (waiter != null && !waiter.claim());
+
+            if (waiter == null) {
+                // someone else took the waiters, give the slot back and look again
+                inFlight.decrementAndGet();
+            } else {
+                waiter.start();
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> start(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+        result.whenComplete((value, e) -> release());
+        return result;
+    }
+
+    private <T> CompletableFuture<T> reject(Supplier<T> fallback) {
+        rejectedCalls.increment();
+        return CompletableFuture.completedFuture(fallback.get());
+    }
+
+    /**
+     * Queued call, claimed exactly once: started by {@link #drain()}, expired by the scheduler or cancelled.
+     */
+    private final class Waiter<T> {
+
+        private final Supplier<CompletableFuture<T>> call;
+        private final Supplier<T> fallback;
+        private final Runnable onCancel;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private volatile ScheduledFuture<?> expiry;
+
+        private volatile CompletableFuture<T> started;
+
+        Waiter(Supplier<CompletableFuture<T>> call, Supplier<T> fallback, Runnable onCancel) {
+            this.call = call;
+            this.fallback = fallback;
+            this.onCancel = onCancel;
+            result.whenComplete((value, e) -> {
+                if (result.isCancelled()) {
+                    cancel();
+                }
+            });
+        }
+
+        boolean claim() {
+            if (claimed.compareAndSet(false, true)) {
+                queued.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        void start() {
+            ScheduledFuture<?> pending = expiry;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            try {
+                CompletableFuture<T> call = Bulkhead.this.start(this.call);
+                started = call;
+                if (result.isCancelled()) {
+                    call.cancel(true);
+                    return;
+                }
+                call.whenComplete((value, e) -> {
+                    if (e == null) {
+                        result.complete(value);
+                    } else {
+                        result.completeExceptionally(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * A call cancelled while queued leaves the queue, one cancelled after it started cancels the started call.
+         */
+        void cancel() {
+            if (claim()) {
+                waiting.remove(this);
+                ScheduledFuture<?> pending = expiry;
+                if (pending != null) {
+                    pending.cancel(false);
+                }
+                onCancel.run();
+            } else {
+                CompletableFuture<T> call = started;
+                if (call != null) {
+                    call.cancel(true);
+                }
+            }
+        }
+
+        void expire() {
+            if (claim()) {
+                waiting.remove(this);
+                rejectedCalls.increment();
+                result.complete(fallback.get());
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process circuit breaker guarding the calls to the name service.
+ * <p>
+ * While CLOSED every call is permitted and its outcome is recorded in a {@link SlidingWindow}. Once the window holds
+ * enough calls and either the failure rate or the slow call rate reaches its threshold the breaker goes OPEN and
+ * rejects calls, so callers can short-circuit to a fallback without a network round trip. After the configured wait
+ * it goes HALF_OPEN and lets a limited number of probe calls through; their outcome decides whether it closes again or
+ * re-opens. If the probes don't all report back within the configured wait, it re-opens as well.
+ * <p>
+ * Every permitted call holds a {@link Permit} tied to the phase that granted it, so the outcome of a call started
+ * before a transition never counts against the new phase.
+ */
+class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final SlidingWindow window;
+    private final int minimumCalls;
+    private final float failureRateThreshold;
+    private final float slowCallRateThreshold;
+    private final long slowCallDurationNanos;
+    private final long waitInOpenNanos;
+    private final long maxWaitInHalfOpenNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoClock;
+
+    private final AtomicReference<Phase> phase;
+    private final LongAdder notPermittedCalls = new LongAdder();
+    private final List<Consumer<State>> listeners = new CopyOnWriteArrayList<>();
+
+    CircuitBreaker(NameServiceProperties.Breaker config) {
+        this(config, System::nanoTime);
+    }
+
+    CircuitBreaker(NameServiceProperties.Breaker config, LongSupplier nanoClock) {
+        this.window = config.getWindowType() == NameServiceProperties.WindowType.TIME_BASED
+                ? new TimeSlidingWindow(config.getWindowSize(), nanoClock)
+                : new CountSlidingWindow(config.getWindowSize());
+        this.minimumCalls = config.getMinimumCalls();
+        this.failureRateThreshold = config.getFailureRateThreshold();
+        this.slowCallRateThreshold = config.getSlowCallRateThreshold();
+        this.slowCallDurationNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowCallDuration());
+        this.waitInOpenNanos = TimeUnit.MILLISECONDS.toNanos(config.getWaitInOpen());
+        this.maxWaitInHalfOpenNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitInHalfOpen());
+        this.halfOpenCalls = Math.max(1, config.getHalfOpenCalls());
+        this.nanoClock = nanoClock;
+        this.phase = new AtomicReference<>(new Phase(State.CLOSED, nanoClock.getAsLong(), 0));
+    }
+
+    /**
+     * Asks for permission to call the name service. Every permitted call must be followed by exactly one of
+     * {@link Permit#onSuccess(long)}, {@link Permit#onError(long)} or {@link Permit#release()}.
+     *
+     * @return Permit of the call, or {@code null} if the call must not be made and the fallback should be used instead.
+     */
+    Permit tryAcquirePermission() {
+        Phase current = phase.get();
+        if (current.state == State.OPEN && nanoClock.getAsLong() - current.since >= waitInOpenNanos) {
+            transition(current, State.HALF_OPEN);
+            current = phase.get();
+        } else if (current.state == State.HALF_OPEN && maxWaitInHalfOpenNanos > 0
+                && nanoClock.getAsLong() - current.since >= maxWaitInHalfOpenNanos) {
+            // an outcome got lost, don't wait for it forever
+            transition(current, State.OPEN);
+            current = phase.get();
+        }
+
+        boolean permitted;
+        switch (current.state) {
+            case CLOSED:
+                permitted = true;
+                break;
+            case HALF_OPEN:
+                permitted = current.acquireProbe();
+                break;
+            default:
+                permitted = false;
+        }
+        if (!permitted) {
+            notPermittedCalls.increment();
+            return null;
+        }
+        return current.permit;
+    }
+
+    State getState() {
+        return phase.get().state;
+    }
+
+    /**
+     * Registers a listener called with the new state on every transition, on the thread that caused it. Listeners must
+     * return quickly.
+     */
+    void addListener(Consumer<State> listener) {
+        listeners.add(listener);
+    }
+
+    CircuitBreakerState getMetrics() {
+        Phase current = phase.get();
+        SlidingWindow.Snapshot snapshot = current.state == State.HALF_OPEN ? current.probes.snapshot() : window.snapshot();
+        return new CircuitBreakerState(current.state, snapshot, notPermittedCalls.sum());
+    }
+
+    private void onResult(Phase from, boolean failure, long durationNanos) {
+        Phase current = phase.get();
+        if (from != current) {
+            // the call started before the last transition, it says nothing about the current phase
+            return;
+        }
+        boolean slow = durationNanos >= slowCallDurationNanos;
+        switch (current.state) {
+            case CLOSED:
+                window.record(failure, slow);
+                SlidingWindow.Snapshot snapshot = window.snapshot();
+                if (snapshot.getCalls() >= minimumCalls && exceedsThresholds(snapshot)) {
+                    transition(current, State.OPEN);
+                }
+                break;
+            case HALF_OPEN:
+                current.probes.record(failure, slow);
+                SlidingWindow.Snapshot probes = current.probes.snapshot();
+                if (probes.getCalls() >= halfOpenCalls) {
+                    transition(current, exceedsThresholds(probes) ? State.OPEN : State.CLOSED);
+                }
+                break;
+            default:
+                // no call is permitted while open
+        }
+    }
+
+    private boolean exceedsThresholds(SlidingWindow.Snapshot snapshot) {
+        return snapshot.getFailureRate() >= failureRateThreshold || snapshot.getSlowCallRate() >= slowCallRateThreshold;
+    }
+
+    private void transition(Phase from, State to) {
+        if (to == State.CLOSED) {
+            // nothing records into the window while half-open, and the new phase must start with an empty one
+            window.reset();
+        }
+        if (phase.compareAndSet(from, new Phase(to, nanoClock.getAsLong(), halfOpenCalls))) {
+            listeners.forEach(listener -> listener.accept(to));
+        }
+    }
+
+    /**
+     * Permission for the calls of one phase. A CLOSED phase hands the same permit to all its calls.
+     */
+    final class Permit {
+
+        private final Phase phase;
+
+        private Permit(Phase phase) {
+            this.phase = phase;
+        }
+
+        void onSuccess(long durationNanos) {
+            onResult(phase, false, durationNanos);
+        }
+
+        void onError(long durationNanos) {
+            onResult(phase, true, durationNanos);
+        }
+
+        /**
+         * Gives back a permission that was acquired but not used for a call. A probe only goes back to the half-open
+         * phase it was taken from.
+         */
+        void release() {
+            if (phase.state == State.HALF_OPEN) {
+                phase.remainingProbes.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Immutable state of the breaker, replaced as a whole on each transition so that concurrent transitions from the
+     * same phase have a single winner.
+     */
+    private final class Phase {
+
+        private final State state;
+        private final long since;
+        private final AtomicInteger remainingProbes;
+        private final CountSlidingWindow probes;
+        private final Permit permit = new Permit(this);
+
+        Phase(State state, long since, int probes) {
+            this.state = state;
+            this.since = since;
+            this.remainingProbes = state == State.HALF_OPEN ? new AtomicInteger(probes) : null;
+            this.probes = state == State.HALF_OPEN ? new CountSlidingWindow(probes) : null;
+        }
+
+        boolean acquireProbe() {
+            while (true) {
+                int remaining = remainingProbes.get();
+                if (remaining <= 0) {
+                    return false;
+                }
+                if (remainingProbes.compareAndSet(remaining, remaining - 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
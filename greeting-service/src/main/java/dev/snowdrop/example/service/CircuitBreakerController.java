@@ -16,24 +16,62 @@
 
 package dev.snowdrop.example.service;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
  * Circuit Breaker state controller.
+ * <p>
+ * Dashboards poll the state, so the serialized state is kept for up to {@code cb-state.max-age} milliseconds and
+ * served as is, unless the breaker changes state in the meantime.
  */
 @RestController
 public class CircuitBreakerController {
 
-    private NameService nameService;
+    private final NameService nameService;
+
+    private final long maxAgeNanos;
 
-    public CircuitBreakerController(NameService nameService) {
+    private final AtomicReference<CachedState> cached = new AtomicReference<>();
+
+    public CircuitBreakerController(NameService nameService, @Value("${cb-state.max-age:100}") long maxAge) {
         this.nameService = nameService;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAge);
+        nameService.addStateListener(state -> cached.set(null));
     }
 
     @RequestMapping("/api/cb-state")
-    public CircuitBreakerState getState() throws Exception {
-        return nameService.getState();
+    public ResponseEntity<byte[]> getState() throws Exception {
+        long now = System.nanoTime();
+        CachedState previous = cached.get();
+        if (previous != null && now - previous.createdAt <= maxAgeNanos) {
+            return previous.response;
+        }
+        // concurrent pollers may each build one, that's cheaper than making them wait
+        CachedState state = new CachedState(ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(nameService.getState().toJson()), now);
+        // unless the breaker changed state meanwhile, then the next poller builds a fresh one
+        cached.compareAndSet(previous, state);
+        return state.response;
+    }
+
+    private static final class CachedState {
+
+        private final ResponseEntity<byte[]> response;
+
+        private final long createdAt;
+
+        CachedState(ResponseEntity<byte[]> response, long createdAt) {
+            this.response = response;
+            this.createdAt = createdAt;
+        }
     }
 
 }
@@ -16,45 +16,118 @@
 
 package dev.snowdrop.example.service;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
 
 /**
  * Circuit Breaker state handler.
+ * <p>
+ * Pushes {@code isOpen:true} / {@code isOpen:false} to every connected session when the breaker changes state, and the
+ * current state when a session connects. Broadcasts run on a dedicated thread and only ever send the latest state, and
+ * each session is wrapped in a {@link ConcurrentWebSocketSessionDecorator} so a slow browser is dropped instead of
+ * stalling the others.
  */
 public class CircuitBreakerHandler implements WebSocketHandler {
 
-    private Queue<WebSocketSession> currentSessions = new ConcurrentLinkedQueue<>();
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreakerHandler.class);
 
-    void sendMessage(CircuitBreakerState state) throws Exception {
-        TextMessage message = new TextMessage("isOpen:" + CircuitBreakerState.OPEN.equals(state));
-        for (WebSocketSession session : currentSessions) {
-            session.sendMessage(message);
+    private static final int SEND_TIME_LIMIT = 5000;
+    private static final int BUFFER_SIZE_LIMIT = 8 * 1024;
+
+    private final Map<String, WebSocketSession> currentSessions = new ConcurrentHashMap<>();
+    private final Map<CircuitBreaker.State, TextMessage> messages = new EnumMap<>(CircuitBreaker.State.class);
+    private final AtomicReference<CircuitBreaker.State> pendingState = new AtomicReference<>();
+    private final ExecutorService broadcaster = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "cb-broadcaster");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final NameService nameService;
+
+    public CircuitBreakerHandler(NameService nameService) {
+        this.nameService = nameService;
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            messages.put(state, new TextMessage("isOpen:" + (state == CircuitBreaker.State.OPEN)));
+        }
+        nameService.addStateListener(this::sendMessage);
+    }
+
+    void sendMessage(CircuitBreaker.State state) {
+        // a broadcast is already scheduled if there was a pending state, it will pick up this one instead
+        if (pendingState.getAndSet(state) == null) {
+            broadcaster.execute(this::broadcast);
         }
     }
 
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        currentSessions.add(session);
+        WebSocketSession decorated = new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT, BUFFER_SIZE_LIMIT);
+        currentSessions.put(session.getId(), decorated);
+        send(decorated, messages.get(nameService.getCircuitBreakerState()));
     }
 
     public void handleMessage(WebSocketSession session, WebSocketMessage<?> webSocketMessage) throws Exception {
     }
 
     public void handleTransportError(WebSocketSession session, Throwable throwable) throws Exception {
-
+        currentSessions.remove(session.getId());
     }
 
     public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
-        currentSessions.remove(session);
+        currentSessions.remove(session.getId());
     }
 
     public boolean supportsPartialMessages() {
         return false;
     }
+
+    @PreDestroy
+    public void shutdown() {
+        broadcaster.shutdownNow();
+    }
+
+    private void broadcast() {
+        TextMessage message = messages.get(pendingState.getAndSet(null));
+        for (WebSocketSession session : currentSessions.values()) {
+            send(session, message);
+        }
+    }
+
+    private void send(WebSocketSession session, TextMessage message) {
+        try {
+            session.sendMessage(message);
+        } catch (SessionLimitExceededException e) {
+            LOG.debug("Dropping slow session {}: {}", session.getId(), e.getMessage());
+            currentSessions.remove(session.getId());
+            closeQuietly(session);
+        } catch (IOException | IllegalStateException e) {
+            currentSessions.remove(session.getId());
+            closeQuietly(session);
+        }
+    }
+
+    private void closeQuietly(WebSocketSession session) {
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            // the session is gone anyway
+        }
+    }
 }
@@ -16,15 +16,29 @@
 
 package dev.snowdrop.example.service;
 
+import java.util.List;
+import java.util.Locale;
+
+import dev.snowdrop.example.common.JsonWriter;
+
 /**
- * Circuit Breaker state.
+ * Circuit Breaker state, together with the statistics of its sliding window.
  */
 public class CircuitBreakerState {
 
-    static final CircuitBreakerState OPEN = new CircuitBreakerState("open");
-    static final CircuitBreakerState CLOSED = new CircuitBreakerState("closed");
+    static final String OPEN = "open";
+    static final String CLOSED = "closed";
+    static final String HALF_OPEN = "half_open";
 
     private String state;
+    private float failureRate;
+    private float slowCallRate;
+    private int bufferedCalls;
+    private int failedCalls;
+    private int slowCalls;
+    private long notPermittedCalls;
+    private BulkheadState bulkhead;
+    private List<EndpointState> endpoints;
 
     public CircuitBreakerState() {
     }
@@ -33,9 +47,249 @@ public class CircuitBreakerState {
         this.state = state;
     }
 
+    CircuitBreakerState(CircuitBreaker.State state, SlidingWindow.Snapshot window, long notPermittedCalls) {
+        this.state = state.name().toLowerCase(Locale.ROOT);
+        this.failureRate = window.getFailureRate();
+        this.slowCallRate = window.getSlowCallRate();
+        this.bufferedCalls = window.getCalls();
+        this.failedCalls = window.getFailedCalls();
+        this.slowCalls = window.getSlowCalls();
+        this.notPermittedCalls = notPermittedCalls;
+    }
+
+    /**
+     * @return One of {@code closed}, {@code open} or {@code half_open}.
+     */
     public String getState() {
         return state;
     }
 
-}
+    /**
+     * @return Percentage of failed calls in the current window.
+     */
+    public float getFailureRate() {
+        return failureRate;
+    }
+
+    /**
+     * @return Percentage of slow calls in the current window.
+     */
+    public float getSlowCallRate() {
+        return slowCallRate;
+    }
+
+    public int getBufferedCalls() {
+        return bufferedCalls;
+    }
+
+    public int getFailedCalls() {
+        return failedCalls;
+    }
+
+    public int getSlowCalls() {
+        return slowCalls;
+    }
+
+    /**
+     * @return Number of calls short-circuited to the fallback since the service started.
+     */
+    public long getNotPermittedCalls() {
+        return notPermittedCalls;
+    }
+
+    /**
+     * @return State of the bulkhead limiting the concurrent calls to the name service.
+     */
+    public BulkheadState getBulkhead() {
+        return bulkhead;
+    }
+
+    CircuitBreakerState withBulkhead(BulkheadState bulkhead) {
+        this.bulkhead = bulkhead;
+        return this;
+    }
+
+    /**
+     * @return State of every name-service replica the calls are balanced over.
+     */
+    public List<EndpointState> getEndpoints() {
+        return endpoints;
+    }
+
+    CircuitBreakerState withEndpoints(List<EndpointState> endpoints) {
+        this.endpoints = endpoints;
+        return this;
+    }
+
+    /**
+     * @return The same document Jackson writes for this bean, without the reflection.
+     */
+    byte[] toJson() {
+        JsonWriter json = new JsonWriter(320 + (endpoints != null ? endpoints.size() * 192 : 0));
+        json.raw("{").name("state").string(state)
+                .raw(",").name("failureRate").number(failureRate)
+                .raw(",").name("slowCallRate").number(slowCallRate)
+                .raw(",").name("bufferedCalls").number(bufferedCalls)
+                .raw(",").name("failedCalls").number(failedCalls)
+                .raw(",").name("slowCalls").number(slowCalls)
+                .raw(",").name("notPermittedCalls").number(notPermittedCalls)
+                .raw(",").name("bulkhead");
+        if (bulkhead != null) {
+            bulkhead.writeTo(json);
+        } else {
+            json.raw("null");
+        }
+        json.raw(",").name("endpoints");
+        if (endpoints != null) {
+            json.raw("[");
+            for (int i = 0; i < endpoints.size(); i++) {
+                if (i > 0) {
+                    json.raw(",");
+                }
+                endpoints.get(i).writeTo(json);
+            }
+            json.raw("]");
+        } else {
+            json.raw("null");
+        }
+        return json.raw("}").toByteArray();
+    }
 
+    /**
+     * Bulkhead state.
+     */
+    public static class BulkheadState {
+
+        private int maxConcurrentCalls;
+        private int limit;
+        private int inFlightCalls;
+        private int queuedCalls;
+        private long rejectedCalls;
+
+        public BulkheadState() {
+        }
+
+        BulkheadState(int maxConcurrentCalls, int limit, int inFlightCalls, int queuedCalls, long rejectedCalls) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            this.limit = limit;
+            this.inFlightCalls = inFlightCalls;
+            this.queuedCalls = queuedCalls;
+            this.rejectedCalls = rejectedCalls;
+        }
+
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        /**
+         * @return Current concurrency limit, equal to {@link #getMaxConcurrentCalls()} unless an adaptive limiter is used.
+         */
+        public int getLimit() {
+            return limit;
+        }
+
+        public int getInFlightCalls() {
+            return inFlightCalls;
+        }
+
+        public int getQueuedCalls() {
+            return queuedCalls;
+        }
+
+        /**
+         * @return Number of calls that got the fallback because the bulkhead was full, since the service started.
+         */
+        public long getRejectedCalls() {
+            return rejectedCalls;
+        }
+
+        void writeTo(JsonWriter json) {
+            json.raw("{").name("maxConcurrentCalls").number(maxConcurrentCalls)
+                    .raw(",").name("limit").number(limit)
+                    .raw(",").name("inFlightCalls").number(inFlightCalls)
+                    .raw(",").name("queuedCalls").number(queuedCalls)
+                    .raw(",").name("rejectedCalls").number(rejectedCalls)
+                    .raw("}");
+        }
+    }
+
+    /**
+     * State of one name-service replica: {@code open} while it is ejected, {@code closed} otherwise.
+     */
+    public static class EndpointState {
+
+        private String url;
+        private String state;
+        private int outstandingCalls;
+        private int consecutiveErrors;
+        private float latency;
+        private int ejections;
+        private long ejectedFor;
+
+        public EndpointState() {
+        }
+
+        EndpointState(String url, String state, int outstandingCalls, int consecutiveErrors, float latency,
+                int ejections, long ejectedFor) {
+            this.url = url;
+            this.state = state;
+            this.outstandingCalls = outstandingCalls;
+            this.consecutiveErrors = consecutiveErrors;
+            this.latency = latency;
+            this.ejections = ejections;
+            this.ejectedFor = ejectedFor;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * @return Either {@code closed} or {@code open}.
+         */
+        public String getState() {
+            return state;
+        }
+
+        public int getOutstandingCalls() {
+            return outstandingCalls;
+        }
+
+        public int getConsecutiveErrors() {
+            return consecutiveErrors;
+        }
+
+        /**
+         * @return Average latency of the recent successful calls, in milliseconds.
+         */
+        public float getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return Multiplier of the base ejection time for the next ejection.
+         */
+        public int getEjections() {
+            return ejections;
+        }
+
+        /**
+         * @return Milliseconds left until the replica is used again, 0 if it is not ejected.
+         */
+        public long getEjectedFor() {
+            return ejectedFor;
+        }
+
+        void writeTo(JsonWriter json) {
+            json.raw("{").name("url").string(url)
+                    .raw(",").name("state").string(state)
+                    .raw(",").name("outstandingCalls").number(outstandingCalls)
+                    .raw(",").name("consecutiveErrors").number(consecutiveErrors)
+                    .raw(",").name("latency").number(latency)
+                    .raw(",").name("ejections").number(ejections)
+                    .raw(",").name("ejectedFor").number(ejectedFor)
+                    .raw("}");
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+/**
+ * Number of calls to the name service allowed in flight at the same time, used by the {@link Bulkhead}.
+ * <p>
+ * Adaptive implementations adjust the limit from the round trip time of completed calls.
+ */
+interface ConcurrencyLimit {
+
+    /**
+     * @return Current limit, read on every call so it must be cheap.
+     */
+    int getLimit();
+
+    /**
+     * Feeds the outcome of a completed call.
+     *
+     * @param rttNanos round trip time of the call
+     * @param inFlight number of calls in flight when the call completed
+     * @param dropped whether the call failed in a way that signals overload, e.g. a timeout or a 503 from Istio
+     */
+    void onSample(long rttNanos, int inFlight, boolean dropped);
+
+    /**
+     * @return Round trip time of the latest call in milliseconds.
+     */
+    double getRtt();
+
+    /**
+     * @return Round trip time the limit considers as no-load baseline, in milliseconds, or 0 if not tracked.
+     */
+    double getBaselineRtt();
+
+    /**
+     * @param config limiter settings
+     * @param maxLimit upper bound of the limit
+     * @return Limit using the configured algorithm.
+     */
+    static ConcurrencyLimit create(NameServiceProperties.Limiter config, int maxLimit) {
+        switch (config.getAlgorithm()) {
+            case AIMD:
+                return new AimdLimit(config, maxLimit);
+            case GRADIENT:
+                return new GradientLimit(config, maxLimit);
+            default:
+                return fixed(maxLimit);
+        }
+    }
+
+    static ConcurrencyLimit fixed(int limit) {
+        return new ConcurrencyLimit() {
+            private volatile long rttNanos;
+
+            @Override
+            public int getLimit() {
+                return limit;
+            }
+
+            @Override
+            public void onSample(long rttNanos, int inFlight, boolean dropped) {
+                this.rttNanos = rttNanos;
+            }
+
+            @Override
+            public double getRtt() {
+                return rttNanos / 1e6;
+            }
+
+            @Override
+            public double getBaselineRtt() {
+                return 0;
+            }
+        };
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sliding window over the last N calls, kept in a ring buffer.
+ * <p>
+ * Each slot holds the outcome of one call. Writers claim a slot with an atomic cursor and swap the new outcome in, so
+ * the aggregated counters can be adjusted by the exact difference between the evicted and the recorded outcome.
+ */
+class CountSlidingWindow implements SlidingWindow {
+
+    private static final int RECORDED = 1;
+    private static final int FAILURE = 2;
+    private static final int SLOW = 4;
+
+    private final int size;
+    private final AtomicIntegerArray outcomes;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger failedCalls = new AtomicInteger();
+    private final AtomicInteger slowCalls = new AtomicInteger();
+
+    CountSlidingWindow(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Window size must be positive: " + size);
+        }
+        this.size = size;
+        this.outcomes = new AtomicIntegerArray(size);
+    }
+
+    @Override
+    public void record(boolean failure, boolean slow) {
+        int outcome = RECORDED | (failure ? FAILURE : 0) | (slow ? SLOW : 0);
+        int slot = (int) (cursor.getAndIncrement() % size);
+        replace(outcomes.getAndSet(slot, outcome), outcome);
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        return new Snapshot(calls.get(), failedCalls.get(), slowCalls.get());
+    }
+
+    @Override
+    public void reset() {
+        for (int slot = 0; slot < size; slot++) {
+            replace(outcomes.getAndSet(slot, 0), 0);
+        }
+    }
+
+    private void replace(int previous, int outcome) {
+        adjust(calls, previous, outcome, RECORDED);
+        adjust(failedCalls, previous, outcome, FAILURE);
+        adjust(slowCalls, previous, outcome, SLOW);
+    }
+
+    private static void adjust(AtomicInteger counter, int previous, int outcome, int flag) {
+        int delta = ((outcome & flag) != 0 ? 1 : 0) - ((previous & flag) != 0 ? 1 : 0);
+        if (delta != 0) {
+            counter.addAndGet(delta);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gradient limit, after the Netflix concurrency-limits {@code Gradient2Limit}.
+ * <p>
+ * The limit follows the ratio between a long-term exponential average of the round trip time and the latest sample:
+ * while the name service answers as fast as usual the limit grows by a queue allowance of {@code sqrt(limit)}, and as
+ * latency rises above the baseline (beyond the tolerance) the limit shrinks proportionally, down to half per update.
+ * Updates are smoothed; reading the limit is a plain volatile read.
+ * <p>
+ * Samples are added to lock-free accumulators, and whichever caller gets the update lock folds all the samples
+ * gathered so far into one update, using their average round trip time. Callers that find the lock taken return at
+ * once, their samples are picked up by the next update, so completing calls never wait on each other.
+ */
+class GradientLimit implements ConcurrencyLimit {
+
+    private static final int RTT_BITS = 44;
+    private static final long ONE_SAMPLE = 1L << RTT_BITS;
+    private static final long RTT_MASK = ONE_SAMPLE - 1;
+    // far beyond any read timeout; capped, hundreds of thousands of samples fit before the sum could overflow
+    private static final long MAX_RTT_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final int longWindow;
+
+    // count of the pending samples in the high bits and the sum of their round trip times in microseconds in the low
+    // bits, so a sample is added and the pending samples are taken in one atomic operation each
+    private final AtomicLong samples = new AtomicLong();
+    private final LongAccumulator maxInFlight = new LongAccumulator(Math::max, 0);
+    private final LongAdder droppedCount = new LongAdder();
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    // guarded by updateLock
+    private long updatedDropped;
+    private double estimatedLimit;
+    private double longRtt;
+
+    private volatile int limit;
+    private volatile double rtt;
+    private volatile double baselineRtt;
+
+    GradientLimit(NameServiceProperties.Limiter config, int maxLimit) {
+        this.minLimit = config.getMinLimit();
+        this.maxLimit = maxLimit;
+        this.tolerance = config.getTolerance();
+        this.smoothing = config.getSmoothing();
+        this.longWindow = config.getLongWindow();
+        this.estimatedLimit = Math.min(maxLimit, config.getInitialLimit());
+        this.limit = (int) estimatedLimit;
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public void onSample(long rttNanos, int inFlight, boolean dropped) {
+        maxInFlight.accumulate(inFlight);
+        if (dropped) {
+            droppedCount.increment();
+        }
+        long rttMicros = Math.min(MAX_RTT_MICROS, TimeUnit.NANOSECONDS.toMicros(Math.max(0, rttNanos)));
+        samples.addAndGet(ONE_SAMPLE + rttMicros);
+        if (updateLock.tryLock()) {
+            try {
+                update();
+            } finally {
+                updateLock.unlock();
+            }
+        }
+    }
+
+    private void update() {
+        long pending = samples.getAndSet(0);
+        long count = pending >>> RTT_BITS;
+        if (count == 0) {
+            return;
+        }
+        double shortRtt = Math.max(1, (pending & RTT_MASK) * 1000.0 / count);
+        int inFlight = (int) maxInFlight.getThenReset();
+        // the drops are never reset, as a reset could lose one counted at the same time
+        long totalDropped = droppedCount.sum();
+        boolean dropped = totalDropped > updatedDropped;
+        updatedDropped = totalDropped;
+
+        longRtt = longRtt == 0 ? shortRtt : longRtt + (shortRtt - longRtt) / longWindow;
+        // the baseline drifts up under sustained load, let it recover quickly once latency drops
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        rtt = shortRtt / 1e6;
+        baselineRtt = longRtt / 1e6;
+
+        // no evidence for growing the limit if we don't use it
+        if (!dropped && inFlight < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = dropped ? 0.5 : Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    @Override
+    public double getRtt() {
+        return rtt;
+    }
+
+    @Override
+    public double getBaselineRtt() {
+        return baselineRtt;
+    }
+}
@@ -16,6 +16,12 @@
 
 package dev.snowdrop.example.service;
 
+import java.util.concurrent.CompletableFuture;
+
+import dev.snowdrop.example.common.JsonWriter;
+import dev.snowdrop.example.common.OutcomeStatistics;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -27,15 +33,22 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 public class GreetingController {
 
+    // health checks poll this, there is no need to serialize the same greeting every time
+    private static final ResponseEntity<byte[]> PING = ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON_UTF8)
+            .body(new Greeting("OK", null).toJson().toByteArray());
+
     private final NameService nameService;
+    private final OutcomeStatistics statistics;
 
-    public GreetingController(NameService nameService) {
+    public GreetingController(NameService nameService, OutcomeStatistics statistics) {
         this.nameService = nameService;
+        this.statistics = statistics;
     }
 
     @RequestMapping("/api/ping")
-    public Greeting getPing() throws Exception {
-        return new Greeting("OK", null);
+    public ResponseEntity<byte[]> getPing() throws Exception {
+        return PING;
     }
 
     /**
@@ -43,14 +56,39 @@ public class GreetingController {
      * <p>
      * Request to the name service is guarded with a circuit breaker. Therefore if a name service is not available or is too
      * slow to response fallback name is used.
+     * <p>
+     * The name service is called asynchronously, so the request thread is released while waiting for the name.
      *
      * @return Greeting string.
      */
     @GetMapping("/api/greeting")
-    public Greeting getGreeting(@RequestParam(name = "from", required = false) String from, @RequestParam(name = "delay", required = false) String delay) throws Exception {
-        String result = String.format("Hello, %s!", nameService.getName(from, delay));
+    public CompletableFuture<Greeting> getGreeting(@RequestParam(name = "from", required = false) String from, @RequestParam(name = "delay", required = false) String delay) throws Exception {
+        long start = System.nanoTime();
+        return nameService.getName(from, delay)
+                .whenComplete((name, e) -> statistics.record(outcomeOf(name, e), System.nanoTime() - start))
+                .thenApply(name -> new Greeting("Hello, ".concat(name).concat("!"), from));
+    }
+
+    /**
+     * Live view of the greetings served over the last seconds, to watch a load test or the breaker at work.
+     *
+     * @param window how many of the latest seconds to include, the whole statistics window by default
+     * @return Counts of passed, fallback and failed greetings, their rate and latency percentiles in milliseconds.
+     */
+    @GetMapping("/api/greeting-stats")
+    public ResponseEntity<byte[]> getGreetingStats(@RequestParam(name = "window", required = false) Integer window) {
+        OutcomeStatistics.Snapshot snapshot = window != null ? statistics.snapshot(window) : statistics.snapshot();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(snapshot.toJson());
+    }
 
-        return new Greeting(result, from);
+    private static OutcomeStatistics.Outcome outcomeOf(String name, Throwable e) {
+        if (e != null) {
+            return OutcomeStatistics.Outcome.ERROR;
+        }
+        return NameService.FALLBACK_NAME.equals(name)
+                ? OutcomeStatistics.Outcome.FALLBACK : OutcomeStatistics.Outcome.PASSED;
     }
 
     static class Greeting {
@@ -69,5 +107,15 @@ public class GreetingController {
         public String getFrom() {
             return from;
         }
+
+        /**
+         * @see GreetingMessageConverter
+         */
+        JsonWriter toJson() {
+            return new JsonWriter(32 + content.length() + (from != null ? from.length() : 0))
+                    .raw("{").name("content").string(content)
+                    .raw(",").name("from").string(from)
+                    .raw("}");
+        }
     }
 }
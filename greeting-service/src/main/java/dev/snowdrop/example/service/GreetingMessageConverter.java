@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes the greetings as JSON without going through Jackson's reflective bean serializer: {@code /api/greeting} is
+ * the busiest endpoint of the service. Being a bean, it is put before the default converters.
+ * <p>
+ * It only writes: {@link #canRead} is always false, so Spring never asks it to read a request body.
+ */
+@Component
+public class GreetingMessageConverter implements HttpMessageConverter<GreetingController.Greeting> {
+
+    private static final List<MediaType> SUPPORTED_MEDIA_TYPES = Collections.unmodifiableList(Arrays.asList(
+            MediaType.APPLICATION_JSON_UTF8, MediaType.APPLICATION_JSON, new MediaType("application", "*+json")));
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        if (GreetingController.Greeting.class != clazz) {
+            return false;
+        }
+        if (mediaType == null || MediaType.ALL.equals(mediaType)) {
+            return true;
+        }
+        for (MediaType supported : SUPPORTED_MEDIA_TYPES) {
+            if (supported.isCompatibleWith(mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes() {
+        return SUPPORTED_MEDIA_TYPES;
+    }
+
+    @Override
+    public GreetingController.Greeting read(Class<? extends GreetingController.Greeting> clazz,
+            HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Greetings are only written");
+    }
+
+    @Override
+    public void write(GreetingController.Greeting greeting, MediaType contentType, HttpOutputMessage outputMessage)
+            throws IOException {
+        // the negotiated type, unless it was left open, always with the charset the JSON is written in
+        MediaType type = MediaType.APPLICATION_JSON_UTF8;
+        if (contentType != null && contentType.isConcrete()) {
+            type = new MediaType(contentType, type.getCharset());
+        }
+        outputMessage.getHeaders().setContentType(type);
+        greeting.toJson().writeTo(outputMessage.getBody());
+    }
+}
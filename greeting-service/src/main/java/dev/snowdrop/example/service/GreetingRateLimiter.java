@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import dev.snowdrop.example.common.CallerRateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.handler.MappedInterceptor;
+
+/**
+ * Rate limits {@code /api/greeting} per {@code from} caller, answering 429 before the controller runs and
+ * before the name service is called, so a noisy caller can't trip the breaker for everyone.
+ *
+ * @see CallerRateLimiter
+ */
+@Component
+@ConditionalOnProperty("rate-limit.enabled")
+public class GreetingRateLimiter extends CallerRateLimiter {
+
+    public GreetingRateLimiter(@Value("${rate-limit.rate:100}") double rate, @Value("${rate-limit.burst:200}") int burst,
+            @Value("${rate-limit.idle-timeout:60000}") long idleTimeout,
+            @Value("${rate-limit.max-callers:100000}") long maxCallers) {
+        super("greeting", rate, burst, idleTimeout, maxCallers);
+    }
+
+    @Bean
+    public MappedInterceptor greetingRateLimitInterceptor() {
+        return new MappedInterceptor(new String[] { "/api/greeting" }, this);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import dev.snowdrop.example.common.OutcomeStatistics;
+import dev.snowdrop.example.common.VirtualThreadCustomizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The statistics of the greetings served, shared by the controller that records and shows them and the breaker
+ * journal that persists them.
+ * <p>
+ * With {@code spring.threads.virtual.enabled=true}, Tomcat runs every request and every async dispatch on its own
+ * virtual thread instead of its pool of 200 platform threads. The name-service calls themselves are non-blocking and
+ * stay on the I/O dispatcher threads of the HTTP client. This needs Java 24, see {@link VirtualThreadCustomizer}; on
+ * older runtimes the platform pool is kept.
+ */
+@Configuration
+public class GreetingServerConfiguration {
+
+    @Bean
+    public OutcomeStatistics greetingStatistics(@Value("${greeting.stats.window:60}") int window) {
+        return new OutcomeStatistics(window);
+    }
+
+    @Bean
+    @ConditionalOnProperty("spring.threads.virtual.enabled")
+    public VirtualThreadCustomizer virtualThreadCustomizer() {
+        return new VirtualThreadCustomizer();
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Sends a second, hedged call when the first one is slower than usual, and keeps whichever answers first.
+ * <p>
+ * The hedge is sent after a fixed delay or after the p95 latency of the recent successful calls, and only while the
+ * budget allows it: every call earns {@code budget} percent of a hedge, and the earned hedges are capped, so hedging
+ * never adds more than that share of load. The first call to answer with a name wins and the other one is cancelled.
+ * Cancelling the returned future cancels both calls.
+ */
+class Hedger {
+
+    private static final int MIN_SAMPLES = 100;
+
+    private final ScheduledExecutorService scheduler;
+    private final BooleanSupplier allowed;
+    private final long fixedDelayNanos;
+    private final long minDelayNanos;
+    private final TokenBudget budget;
+
+    private final LongAdder hedgedCalls = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    private final Recorder latencies = new Recorder(3);
+    private final Histogram recent = new Histogram(3);
+    private Histogram interval;
+    private volatile long observedDelayNanos;
+
+    /**
+     * @param allowed whether hedging is allowed at the moment, e.g. only while the circuit breaker is closed
+     */
+    Hedger(NameServiceProperties.Hedge config, ScheduledExecutorService scheduler, BooleanSupplier allowed) {
+        this.scheduler = scheduler;
+        this.allowed = allowed;
+        this.fixedDelayNanos = TimeUnit.MILLISECONDS.toNanos(config.getDelay());
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(config.getMinDelay());
+        this.budget = new TokenBudget(config.getBudget(), 10);
+        if (fixedDelayNanos == 0) {
+            scheduler.scheduleWithFixedDelay(this::updateDelay, 1, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call) {
+        budget.deposit();
+        CompletableFuture<T> primary = call.get();
+        long delay = getDelayNanos();
+        if (delay <= 0 || primary.isDone()) {
+            return primary;
+        }
+
+        Race<T> race = new Race<>(primary);
+        ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            if (race.result.isDone() || !allowed.getAsBoolean() || !budget.tryWithdraw()) {
+                return;
+            }
+            if (!race.enter()) {
+                // the primary call completed in the meantime, give the hedge back
+                budget.refund();
+                return;
+            }
+            hedgedCalls.increment();
+            race.start(call);
+        }, delay, TimeUnit.NANOSECONDS);
+        race.result.whenComplete((value, e) -> timer.cancel(false));
+        return race.result;
+    }
+
+    /**
+     * Feeds the latency of a successful call to the p95 estimate.
+     */
+    void onLatency(long nanos) {
+        if (fixedDelayNanos == 0) {
+            latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+    }
+
+    long getDelayNanos() {
+        return fixedDelayNanos > 0 ? fixedDelayNanos : observedDelayNanos;
+    }
+
+    long getHedgedCalls() {
+        return hedgedCalls.sum();
+    }
+
+    long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * Runs on the scheduler thread only. Until enough calls were seen there is no estimate and no hedging.
+     */
+    private void updateDelay() {
+        interval = latencies.getIntervalHistogram(interval);
+        recent.add(interval);
+        if (recent.getTotalCount() >= MIN_SAMPLES) {
+            long p95 = TimeUnit.MICROSECONDS.toNanos(recent.getValueAtPercentile(95));
+            observedDelayNanos = Math.max(minDelayNanos, p95);
+            recent.reset();
+        }
+    }
+
+    /**
+     * The primary call and the hedge: the first name wins, otherwise the result of the last call to complete is used.
+     */
+    private final class Race<T> {
+
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicInteger running = new AtomicInteger(1);
+        private final CompletableFuture<T> primary;
+        private volatile CompletableFuture<T> hedge;
+
+        Race(CompletableFuture<T> primary) {
+            this.primary = primary;
+            join(primary, false);
+            // the caller gave up, e.g. on a timeout: stop both calls
+            result.whenComplete((value, e) -> {
+                if (result.isCancelled()) {
+                    cancelAll();
+                }
+            });
+        }
+
+        /**
+         * @return {@code false} if the race is already over
+         */
+        boolean enter() {
+            return running.getAndUpdate(current -> current == 0 ? 0 : current + 1) > 0;
+        }
+
+        void start(Supplier<CompletableFuture<T>> call) {
+            CompletableFuture<T> started;
+            try {
+                started = call.get();
+            } catch (RuntimeException e) {
+                finish(null, e);
+                return;
+            }
+            hedge = started;
+            join(started, true);
+            if (result.isDone()) {
+                started.cancel(true);
+            }
+        }
+
+        private void join(CompletableFuture<T> call, boolean isHedge) {
+            call.whenComplete((value, e) -> {
+                if (e == null && value != null) {
+                    if (result.complete(value)) {
+                        if (isHedge) {
+                            hedgeWins.increment();
+                        }
+                        cancelAll();
+                    }
+                } else {
+                    finish(value, e);
+                }
+            });
+        }
+
+        private void finish(T value, Throwable e) {
+            if (running.decrementAndGet() == 0) {
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(value);
+                }
+            }
+        }
+
+        private void cancelAll() {
+            primary.cancel(true);
+            CompletableFuture<T> started = hedge;
+            if (started != null) {
+                started.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Gathers concurrent name lookups into batches sent to the name service as a single request.
+ * <p>
+ * Lookups are grouped by {@code delay}. The first lookup of a batch schedules its dispatch {@code window} milliseconds
+ * later; a batch reaching {@code max-size} lookups is dispatched right away. Each caller trades at most the window of
+ * added latency for a large drop in the number of requests.
+ */
+class MicroBatcher {
+
+    // ConcurrentHashMap doesn't allow null keys
+    private static final String NO_DELAY = "\u0000";
+
+    private final long window;
+    private final int maxSize;
+    private final ScheduledExecutorService scheduler;
+    private final BiFunction<List<String>, String, CompletableFuture<String[]>> dispatcher;
+
+    private final ConcurrentMap<String, Batch> batches = new ConcurrentHashMap<>();
+
+    /**
+     * @param dispatcher asks the name service for the names of the given callers with the given delay, completes with
+     *        {@code null} if the name service is unavailable
+     */
+    MicroBatcher(NameServiceProperties.Batch config, ScheduledExecutorService scheduler,
+            BiFunction<List<String>, String, CompletableFuture<String[]>> dispatcher) {
+        this.window = config.getWindow();
+        this.maxSize = config.getMaxSize();
+        this.scheduler = scheduler;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * @return Future completed with the name, or with {@code null} if the name service is unavailable.
+     */
+    CompletableFuture<String> submit(String from, String delay) {
+        String key = delay != null ? delay : NO_DELAY;
+        while (true) {
+            Batch batch = batches.computeIfAbsent(key, k -> newBatch(k, delay));
+            CompletableFuture<String> name = batch.add(from);
+            if (name != null) {
+                return name;
+            }
+            // the batch is being dispatched, start a new one
+            batches.remove(key, batch);
+        }
+    }
+
+    private Batch newBatch(String key, String delay) {
+        Batch batch = new Batch(key, delay);
+        scheduler.schedule(batch::dispatch, window, TimeUnit.MILLISECONDS);
+        return batch;
+    }
+
+    private final class Batch {
+
+        private final String key;
+        private final String delay;
+        private final List<String> callers = new ArrayList<>();
+        private final List<CompletableFuture<String>> names = new ArrayList<>();
+        private boolean closed;
+
+        Batch(String key, String delay) {
+            this.key = key;
+            this.delay = delay;
+        }
+
+        CompletableFuture<String> add(String from) {
+            CompletableFuture<String> name = new CompletableFuture<>();
+            boolean full;
+            synchronized (this) {
+                if (closed) {
+                    return null;
+                }
+                callers.add(from);
+                names.add(name);
+                full = callers.size() >= maxSize;
+            }
+            if (full) {
+                dispatch();
+            }
+            return name;
+        }
+
+        void dispatch() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            batches.remove(key, this);
+
+            // identical callers in the same batch are only sent once
+            Map<String, Integer> indexes = new LinkedHashMap<>();
+            for (String caller : callers) {
+                indexes.putIfAbsent(caller, indexes.size());
+            }
+            CompletableFuture<String[]> response;
+            try {
+                response = dispatcher.apply(new ArrayList<>(indexes.keySet()), delay);
+            } catch (RuntimeException e) {
+                names.forEach(name -> name.completeExceptionally(e));
+                return;
+            }
+            response.whenComplete((result, e) -> {
+                for (int i = 0; i < callers.size(); i++) {
+                    CompletableFuture<String> name = names.get(i);
+                    if (e != null) {
+                        name.completeExceptionally(e);
+                    } else {
+                        int index = indexes.get(callers.get(i));
+                        name.complete(result != null && index < result.length ? result[index] : null);
+                    }
+                }
+            });
+        }
+    }
+}
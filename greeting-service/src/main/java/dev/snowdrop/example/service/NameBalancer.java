@@ -0,0 +1,302 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Spreads the name-service calls over its replicas and ejects the replicas that misbehave, much like the Istio
+ * {@code outlierDetection} of the destination rule but without a mesh.
+ * <p>
+ * A replica is ejected as soon as it fails {@code consecutiveErrors} calls in a row, and on every {@code interval}
+ * when its average latency is more than {@code latencyOutlierFactor} times the median of the others. It stays out for
+ * {@code baseEjectionTime} times the number of times it was ejected, and never more than {@code maxEjectionPercent}
+ * percent of the replicas are out at once. When all replicas are ejected anyway, they are all used again.
+ */
+class NameBalancer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NameBalancer.class);
+
+    private static final int MAX_EJECTION_MULTIPLIER = 10;
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private final NameServiceProperties.BalancingStrategy strategy;
+    private final int consecutiveErrors;
+    private final long baseEjectionNanos;
+    private final int maxEjectionPercent;
+    private final double latencyOutlierFactor;
+    private final LongAdder totalEjections = new LongAdder();
+
+    private volatile List<Endpoint> endpoints;
+
+    NameBalancer(NameServiceProperties properties, ScheduledExecutorService scheduler) {
+        NameServiceProperties.Balancer config = properties.getBalancer();
+        this.strategy = config.getStrategy();
+        this.consecutiveErrors = config.getConsecutiveErrors();
+        this.baseEjectionNanos = TimeUnit.MILLISECONDS.toNanos(config.getBaseEjectionTime());
+        this.maxEjectionPercent = config.getMaxEjectionPercent();
+        this.latencyOutlierFactor = config.getLatencyOutlierFactor();
+
+        List<String> urls = config.getEndpoints().isEmpty()
+                ? Collections.singletonList(properties.getHost()) : config.getEndpoints();
+        this.endpoints = urls.stream().map(Endpoint::new).collect(Collectors.toList());
+
+        if (config.getDnsRefresh() > 0) {
+            URI uri = URI.create(properties.getHost());
+            // the lookup may block, keep it off the scheduler thread which also runs the call deadlines
+            scheduler.scheduleWithFixedDelay(() -> CompletableFuture.runAsync(() -> resolve(uri)), 0,
+                    config.getDnsRefresh(), TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleWithFixedDelay(this::sweep, config.getInterval(), config.getInterval(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Endpoint to send the next call to. The caller must report the outcome of the call to it.
+     */
+    Endpoint choose() {
+        List<Endpoint> all = endpoints;
+        int size = all.size();
+        if (size == 1) {
+            return all.get(0);
+        }
+        long now = System.nanoTime();
+        if (strategy == NameServiceProperties.BalancingStrategy.POWER_OF_TWO_CHOICES) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(size);
+            int second = (first + 1 + random.nextInt(size - 1)) % size;
+            Endpoint a = all.get(first);
+            Endpoint b = all.get(second);
+            boolean aAvailable = !a.isEjected(now);
+            boolean bAvailable = !b.isEjected(now);
+            if (aAvailable && bAvailable) {
+                return a.outstanding.get() <= b.outstanding.get() ? a : b;
+            }
+            if (aAvailable || bAvailable) {
+                return aAvailable ? a : b;
+            }
+        }
+        return leastOutstanding(all, now);
+    }
+
+    /**
+     * Scans from a random offset so that ties don't all land on the first endpoint.
+     */
+    private Endpoint leastOutstanding(List<Endpoint> all, long now) {
+        int size = all.size();
+        int offset = ThreadLocalRandom.current().nextInt(size);
+        Endpoint best = null;
+        Endpoint bestEjected = null;
+        for (int i = 0; i < size; i++) {
+            Endpoint endpoint = all.get((offset + i) % size);
+            if (endpoint.isEjected(now)) {
+                if (bestEjected == null || endpoint.outstanding.get() < bestEjected.outstanding.get()) {
+                    bestEjected = endpoint;
+                }
+            } else if (best == null || endpoint.outstanding.get() < best.outstanding.get()) {
+                best = endpoint;
+            }
+        }
+        // every endpoint is ejected: better to try one of them than to fail every call
+        return best != null ? best : bestEjected;
+    }
+
+    List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    int getEjectedEndpoints() {
+        long now = System.nanoTime();
+        return (int) endpoints.stream().filter(endpoint -> endpoint.isEjected(now)).count();
+    }
+
+    long getTotalEjections() {
+        return totalEjections.sum();
+    }
+
+    /**
+     * Ejects the endpoint unless too many are ejected already.
+     */
+    private synchronized void eject(Endpoint endpoint, String reason) {
+        long now = System.nanoTime();
+        List<Endpoint> all = endpoints;
+        if (endpoint.isEjected(now) || !all.contains(endpoint)) {
+            return;
+        }
+        long ejected = all.stream().filter(other -> other.isEjected(now)).count();
+        if ((ejected + 1) * 100 > (long) all.size() * maxEjectionPercent) {
+            return;
+        }
+        endpoint.ejections = Math.min(endpoint.ejections + 1, MAX_EJECTION_MULTIPLIER);
+        endpoint.ejectedUntil = now + baseEjectionNanos * endpoint.ejections;
+        endpoint.consecutiveErrors.set(0);
+        // start over when it comes back, the old average would only get it ejected again
+        endpoint.latencyNanos = 0;
+        totalEjections.increment();
+        LOG.info("Ejected {} for {} ms: {}", endpoint.url,
+                TimeUnit.NANOSECONDS.toMillis(baseEjectionNanos * endpoint.ejections), reason);
+    }
+
+    /**
+     * Runs on the scheduler thread only: ejects the latency outliers and forgets old ejections of healthy endpoints.
+     */
+    private void sweep() {
+        long now = System.nanoTime();
+        List<Endpoint> available = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.isEjected(now)) {
+                continue;
+            }
+            synchronized (this) {
+                if (endpoint.ejections > 0 && now - endpoint.ejectedUntil > baseEjectionNanos) {
+                    endpoint.ejections--;
+                    endpoint.ejectedUntil = now;
+                }
+            }
+            if (endpoint.latencyNanos > 0) {
+                available.add(endpoint);
+            }
+        }
+        // with fewer than three endpoints the median says nothing about which one is the outlier
+        if (latencyOutlierFactor <= 0 || available.size() < 3) {
+            return;
+        }
+        double[] latencies = available.stream().mapToDouble(endpoint -> endpoint.latencyNanos).sorted().toArray();
+        double median = latencies[latencies.length / 2];
+        for (Endpoint endpoint : available) {
+            if (endpoint.latencyNanos > median * latencyOutlierFactor) {
+                eject(endpoint, String.format("average latency %.1f ms, median %.1f ms",
+                        endpoint.latencyNanos / 1e6, median / 1e6));
+            }
+        }
+    }
+
+    /**
+     * Replaces the endpoints with the addresses the host resolves to, keeping the state of the known ones.
+     */
+    private void resolve(URI uri) {
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(uri.getHost());
+        } catch (UnknownHostException e) {
+            LOG.warn("Could not resolve {}, keeping {} endpoints", uri.getHost(), endpoints.size());
+            return;
+        }
+        Map<String, Endpoint> known = new LinkedHashMap<>();
+        endpoints.forEach(endpoint -> known.put(endpoint.url, endpoint));
+        List<Endpoint> resolved = Arrays.stream(addresses)
+                .map(address -> toUrl(uri, address))
+                .distinct()
+                .map(url -> known.getOrDefault(url, new Endpoint(url)))
+                .collect(Collectors.toList());
+        synchronized (this) {
+            if (!resolved.isEmpty() && !resolved.equals(endpoints)) {
+                LOG.info("{} resolves to {}", uri.getHost(),
+                        resolved.stream().map(endpoint -> endpoint.url).collect(Collectors.toList()));
+                endpoints = resolved;
+            }
+        }
+    }
+
+    private static String toUrl(URI uri, InetAddress address) {
+        String host = address instanceof Inet6Address
+                ? "[" + address.getHostAddress() + "]" : address.getHostAddress();
+        return uri.getScheme() + "://" + host + (uri.getPort() != -1 ? ":" + uri.getPort() : "");
+    }
+
+    /**
+     * One name-service replica.
+     */
+    final class Endpoint {
+
+        private final String url;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveErrors = new AtomicInteger();
+        // exponentially weighted, the racy updates only lose a sample now and then
+        private volatile double latencyNanos;
+        // guarded by the balancer
+        private int ejections;
+        private volatile long ejectedUntil = System.nanoTime();
+
+        private Endpoint(String url) {
+            this.url = url;
+        }
+
+        String getUrl() {
+            return url;
+        }
+
+        boolean isEjected(long now) {
+            return now - ejectedUntil < 0;
+        }
+
+        void onStart() {
+            outstanding.incrementAndGet();
+        }
+
+        void onSuccess(long nanos) {
+            outstanding.decrementAndGet();
+            consecutiveErrors.set(0);
+            double average = latencyNanos;
+            latencyNanos = average == 0 ? nanos : average + LATENCY_WEIGHT * (nanos - average);
+        }
+
+        void onError() {
+            outstanding.decrementAndGet();
+            int threshold = NameBalancer.this.consecutiveErrors;
+            if (threshold > 0 && consecutiveErrors.incrementAndGet() >= threshold) {
+                eject(this, threshold + " consecutive errors");
+            }
+        }
+
+        /**
+         * The call was abandoned by the caller, which says nothing about this endpoint.
+         */
+        void onCancel() {
+            outstanding.decrementAndGet();
+        }
+
+        CircuitBreakerState.EndpointState getState() {
+            long now = System.nanoTime();
+            synchronized (NameBalancer.this) {
+                return new CircuitBreakerState.EndpointState(url,
+                        isEjected(now) ? CircuitBreakerState.OPEN : CircuitBreakerState.CLOSED, outstanding.get(),
+                        consecutiveErrors.get(), (float) (latencyNanos / 1e6), ejections,
+                        isEjected(now) ? TimeUnit.NANOSECONDS.toMillis(ejectedUntil - now) : 0);
+            }
+        }
+    }
+}
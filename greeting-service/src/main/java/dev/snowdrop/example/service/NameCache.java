@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Local cache of names keyed by {@code from}, the only input the name depends on.
+ * <p>
+ * Entries are evicted by size (W-TinyLFU) and expire {@code expire-after} milliseconds after they were loaded from the
+ * name service. Entries older than {@code refresh-after} are still served while a single asynchronous refresh runs in
+ * the background; concurrent misses for the same key share one load. A refresh that gets no name (breaker open, 503,
+ * error) keeps the last known good name until it expires.
+ */
+class NameCache {
+
+    // Caffeine doesn't allow null keys, and a missing from gives a different name than an empty one
+    private static final String NO_FROM = "\u0000";
+
+    private final BiFunction<String, String, CompletableFuture<String>> fetch;
+    private final AsyncLoadingCache<String, CachedName> cache;
+
+    /**
+     * @param fetch asks the name service for a name, completes with {@code null} if none could be obtained
+     */
+    NameCache(NameServiceProperties.Cache config, BiFunction<String, String, CompletableFuture<String>> fetch) {
+        this.fetch = fetch;
+        long expireAfterNanos = TimeUnit.MILLISECONDS.toNanos(config.getExpireAfter());
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .refreshAfterWrite(config.getRefreshAfter(), TimeUnit.MILLISECONDS)
+                .expireAfter(new Expiry<String, CachedName>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedName value, long currentTime) {
+                        return Math.max(0, expireAfterNanos - (currentTime - value.loadedAt));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedName value, long currentTime, long currentDuration) {
+                        // a failed refresh puts the old entry back, which must not extend its life
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedName value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync(new AsyncCacheLoader<String, CachedName>() {
+                    @Override
+                    public CompletableFuture<CachedName> asyncLoad(String key, Executor executor) {
+                        return load(fromOf(key), null);
+                    }
+
+                    @Override
+                    public CompletableFuture<CachedName> asyncReload(String key, CachedName oldValue, Executor executor) {
+                        return load(fromOf(key), null).handle((value, e) -> value != null ? value : oldValue);
+                    }
+                });
+    }
+
+    /**
+     * @return Future completed with the cached or loaded name, or with {@code null} if there is none.
+     */
+    CompletableFuture<String> get(String from, String delay) {
+        return cache.get(from != null ? from : NO_FROM, (key, executor) -> load(from, delay))
+                .thenApply(cached -> cached != null ? cached.name : null);
+    }
+
+    CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    long size() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    private CompletableFuture<CachedName> load(String from, String delay) {
+        // a null value is not cached, so fallbacks are never stored
+        return fetch.apply(from, delay).thenApply(name -> name != null ? new CachedName(name, System.nanoTime()) : null);
+    }
+
+    private static String fromOf(String key) {
+        return NO_FROM.equals(key) ? null : key;
+    }
+
+    private static final class CachedName {
+
+        private final String name;
+        private final long loadedAt;
+
+        CachedName(String name, long loadedAt) {
+            this.name = name;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
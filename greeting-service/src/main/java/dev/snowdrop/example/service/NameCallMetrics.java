@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * Latency and outcome of the calls to the name service.
+ * <p>
+ * Recording a call only touches {@link LongAdder}s and an HdrHistogram {@link Recorder}, neither of which takes a lock,
+ * so it costs tens of nanoseconds. Percentiles are computed when read, over the calls of the last one to two minutes;
+ * counts and sums are cumulative, as Prometheus expects.
+ */
+class NameCallMetrics {
+
+    enum Outcome {
+        /**
+         * The name service answered.
+         */
+        SUCCESS,
+        /**
+         * The name service, or the Istio proxy in front of it, answered 503 and the fallback was used.
+         */
+        UNAVAILABLE,
+        /**
+         * The call did not complete in time.
+         */
+        TIMEOUT,
+        /**
+         * Any other failure.
+         */
+        ERROR;
+
+        final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final long HALF_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private final Map<Outcome, OutcomeStats> outcomes = new EnumMap<>(Outcome.class);
+
+    private final LongAdder rejectedCalls = new LongAdder();
+
+    NameCallMetrics() {
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, new OutcomeStats());
+        }
+    }
+
+    void record(Outcome outcome, long durationNanos) {
+        outcomes.get(outcome).record(durationNanos);
+    }
+
+    /**
+     * Records a call that was not made because the breaker was open or the bulkhead was full.
+     */
+    void recordRejected() {
+        rejectedCalls.increment();
+    }
+
+    static Outcome outcomeOf(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            // SocketTimeoutException and ConnectTimeoutException are both InterruptedIOExceptions
+            if (cause instanceof InterruptedIOException || cause instanceof TimeoutException) {
+                return Outcome.TIMEOUT;
+            }
+        }
+        return Outcome.ERROR;
+    }
+
+    /**
+     * Counts and percentiles in milliseconds, for the actuator {@code /metrics} endpoint.
+     */
+    Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = new ArrayList<>();
+        outcomes.forEach((outcome, stats) -> {
+            String prefix = "name.call." + outcome.tag;
+            Histogram latency = stats.snapshot();
+            metrics.add(new Metric<>(prefix + ".count", stats.count.sum()));
+            metrics.add(new Metric<>(prefix + ".p50", latency.getValueAtPercentile(50) / 1000.0));
+            metrics.add(new Metric<>(prefix + ".p99", latency.getValueAtPercentile(99) / 1000.0));
+            metrics.add(new Metric<>(prefix + ".p999", latency.getValueAtPercentile(99.9) / 1000.0));
+        });
+        metrics.add(new Metric<>("name.call.rejected.count", rejectedCalls.sum()));
+        return metrics;
+    }
+
+    /**
+     * Appends the calls in the Prometheus text format: a {@code name_call_seconds} summary by outcome and a
+     * {@code name_call_rejected_total} counter.
+     */
+    void writePrometheus(StringBuilder out) {
+        out.append("# HELP name_call_seconds Latency of the calls to the name service by outcome.\n");
+        out.append("# TYPE name_call_seconds summary\n");
+        outcomes.forEach((outcome, stats) -> {
+            Histogram latency = stats.snapshot();
+            for (double quantile : QUANTILES) {
+                out.append("name_call_seconds{outcome=\"").append(outcome.tag).append("\",quantile=\"").append(quantile)
+                        .append("\"} ").append(latency.getValueAtPercentile(quantile * 100) / 1e6).append('\n');
+            }
+            out.append("name_call_seconds_count{outcome=\"").append(outcome.tag).append("\"} ")
+                    .append(stats.count.sum()).append('\n');
+            out.append("name_call_seconds_sum{outcome=\"").append(outcome.tag).append("\"} ")
+                    .append(stats.sumNanos.sum() / 1e9).append('\n');
+        });
+        out.append("# HELP name_call_rejected_total Calls not made because the breaker was open or the bulkhead full.\n");
+        out.append("# TYPE name_call_rejected_total counter\n");
+        out.append("name_call_rejected_total ").append(rejectedCalls.sum()).append('\n');
+    }
+
+    /**
+     * Cumulative count and sum, and a latency histogram in microseconds rolled over every minute.
+     */
+    private static final class OutcomeStats {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder sumNanos = new LongAdder();
+
+        private final Recorder recorder = new Recorder(3);
+
+        private Histogram interval;
+
+        private Histogram previous = new Histogram(3);
+
+        private Histogram current = new Histogram(3);
+
+        private long rotatedAt = System.nanoTime();
+
+        void record(long durationNanos) {
+            count.increment();
+            sumNanos.add(durationNanos);
+            recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+        }
+
+        /**
+         * @return the calls recorded in the last one to two minutes
+         */
+        synchronized Histogram snapshot() {
+            interval = recorder.getIntervalHistogram(interval);
+            current.add(interval);
+            long now = System.nanoTime();
+            if (now - rotatedAt >= HALF_WINDOW_NANOS) {
+                previous = current;
+                current = new Histogram(3);
+                rotatedAt = now;
+            }
+            Histogram window = previous.copy();
+            window.add(current);
+            return window;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
+import org.springframework.http.client.OkHttp3ClientHttpRequestFactory;
+import org.springframework.web.client.AsyncRestTemplate;
+
+/**
+ * Pooled, keep-alive, non-blocking HTTP client used to call the name service, or with
+ * {@code name.client.protocol=h2c} an HTTP/2 client multiplexing the calls.
+ */
+@Configuration
+@EnableConfigurationProperties(NameServiceProperties.class)
+public class NameClientConfiguration {
+
+    private static final String PROTOCOL = "name.client.protocol";
+
+    private static final String HTTP_1_1 = "http_1_1";
+
+    @Bean
+    @ConditionalOnProperty(name = PROTOCOL, havingValue = HTTP_1_1, matchIfMissing = true)
+    public PoolingNHttpClientConnectionManager nameConnectionManager(NameServiceProperties properties)
+            throws IOReactorException {
+        NameServiceProperties.Client client = properties.getClient();
+        IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(client.getIoThreads())
+                .setConnectTimeout(client.getConnectTimeout())
+                .setSoTimeout(client.getReadTimeout())
+                .build();
+
+        PoolingNHttpClientConnectionManager connectionManager =
+                new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig));
+        connectionManager.setMaxTotal(client.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(client.getMaxPerRoute());
+        return connectionManager;
+    }
+
+    /**
+     * Single daemon thread for the periodic and delayed tasks of the name-service client.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService nameScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "name-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // most delayed tasks are timeouts that get cancelled, don't let them pile up
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = PROTOCOL, havingValue = HTTP_1_1, matchIfMissing = true)
+    public CloseableHttpAsyncClient nameHttpClient(PoolingNHttpClientConnectionManager nameConnectionManager,
+            ScheduledExecutorService nameScheduler, NameServiceProperties properties) {
+        NameServiceProperties.Client client = properties.getClient();
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(client.getConnectTimeout())
+                .setSocketTimeout(client.getReadTimeout())
+                .setConnectionRequestTimeout(client.getPoolAcquireTimeout())
+                .build();
+
+        CloseableHttpAsyncClient httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(nameConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                // honour the server's Keep-Alive header, but never keep a connection forever
+                .setKeepAliveStrategy((response, context) -> {
+                    long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return keepAlive > 0 ? keepAlive : client.getKeepAlive();
+                })
+                .build();
+        httpClient.start();
+
+        // the async client has no built-in evictor, so sweep the pool periodically
+        long idleEviction = client.getIdleEviction();
+        nameScheduler.scheduleWithFixedDelay(() -> {
+            nameConnectionManager.closeExpiredConnections();
+            nameConnectionManager.closeIdleConnections(idleEviction, TimeUnit.MILLISECONDS);
+        }, idleEviction, idleEviction, TimeUnit.MILLISECONDS);
+
+        return httpClient;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = PROTOCOL, havingValue = HTTP_1_1, matchIfMissing = true)
+    public AsyncRestTemplate nameRestTemplate(CloseableHttpAsyncClient nameHttpClient) {
+        return new AsyncRestTemplate(new HttpComponentsAsyncClientHttpRequestFactory(nameHttpClient));
+    }
+
+    /**
+     * Exposes the connection pool statistics on the actuator {@code /metrics} endpoint.
+     */
+    @Bean
+    @ConditionalOnProperty(name = PROTOCOL, havingValue = HTTP_1_1, matchIfMissing = true)
+    public PublicMetrics nameConnectionPoolMetrics(PoolingNHttpClientConnectionManager nameConnectionManager) {
+        return () -> {
+            PoolStats stats = nameConnectionManager.getTotalStats();
+            return Arrays.<Metric<?>>asList(
+                    new Metric<>("name.client.pool.leased", stats.getLeased()),
+                    new Metric<>("name.client.pool.pending", stats.getPending()),
+                    new Metric<>("name.client.pool.available", stats.getAvailable()),
+                    new Metric<>("name.client.pool.max", stats.getMax()));
+        };
+    }
+
+    /**
+     * HTTP/2 over cleartext with prior knowledge, so no upgrade round trip and no TLS: the concurrent calls to an
+     * endpoint share one connection instead of queuing for a pooled one.
+     */
+    @Configuration
+    @ConditionalOnProperty(name = PROTOCOL, havingValue = "h2c")
+    static class H2cClientConfiguration {
+
+        private OkHttpClient httpClient;
+
+        @Bean
+        public AsyncRestTemplate nameRestTemplate(NameServiceProperties properties) {
+            return new AsyncRestTemplate(new OkHttp3ClientHttpRequestFactory(nameH2cHttpClient(properties)));
+        }
+
+        OkHttpClient nameH2cHttpClient(NameServiceProperties properties) {
+            NameServiceProperties.Client client = properties.getClient();
+            Dispatcher dispatcher = new Dispatcher();
+            // the bulkhead already limits the concurrent calls, don't queue them a second time
+            dispatcher.setMaxRequests(client.getMaxTotal());
+            dispatcher.setMaxRequestsPerHost(client.getMaxTotal());
+            httpClient = new OkHttpClient.Builder()
+                    .protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE))
+                    .dispatcher(dispatcher)
+                    .connectionPool(new ConnectionPool(client.getMaxPerRoute(), client.getKeepAlive(),
+                            TimeUnit.MILLISECONDS))
+                    .connectTimeout(client.getConnectTimeout(), TimeUnit.MILLISECONDS)
+                    .readTimeout(client.getReadTimeout(), TimeUnit.MILLISECONDS)
+                    .build();
+            return httpClient;
+        }
+
+        @PreDestroy
+        public void shutdown() {
+            if (httpClient != null) {
+                httpClient.dispatcher().executorService().shutdown();
+                httpClient.connectionPool().evictAll();
+            }
+        }
+    }
+}
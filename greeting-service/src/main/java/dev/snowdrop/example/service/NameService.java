@@ -16,53 +16,315 @@
 
 package dev.snowdrop.example.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.client.AsyncRestTemplate;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 
 /**
  * Service invoking name-service via REST
  */
 @Service
-public class NameService {
+public class NameService implements PublicMetrics {
 
-    private static final String nameHost = System.getProperty("name.host", "http://spring-boot-istio-circuit-breaker-name:8080");
-    private final RestTemplate restTemplate;
-    private final AtomicBoolean isCBOpen = new AtomicBoolean(false);
+    static final String FALLBACK_NAME = "Fallback";
 
-    public NameService() {
-        this.restTemplate = new RestTemplate();
+    private final NameBalancer balancer;
+    private final AsyncRestTemplate restTemplate;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final NameCache cache;
+    private final SingleFlight<NameRequest, String> singleFlight;
+    private final MicroBatcher batcher;
+    private final Hedger hedger;
+    private final Retrier retrier;
+    private final NameCallMetrics callMetrics = new NameCallMetrics();
+    private final ScheduledExecutorService scheduler;
+    private final long timeoutMillis;
+
+    public NameService(AsyncRestTemplate nameRestTemplate, ScheduledExecutorService nameScheduler,
+            NameServiceProperties properties) {
+        this.restTemplate = nameRestTemplate;
+        this.balancer = new NameBalancer(properties, nameScheduler);
+        this.scheduler = nameScheduler;
+        this.timeoutMillis = properties.getTimeout();
+        this.circuitBreaker = new CircuitBreaker(properties.getBreaker());
+        int maxConcurrentCalls = properties.getBulkhead().getMaxConcurrentCalls();
+        this.bulkhead = new Bulkhead(properties.getBulkhead(),
+                ConcurrencyLimit.create(properties.getLimiter(), maxConcurrentCalls), nameScheduler);
+        this.batcher = properties.getBatch().isEnabled()
+                ? new MicroBatcher(properties.getBatch(), nameScheduler, this::lookUpNames) : null;
+        this.retrier = properties.getRetry().isEnabled() ? new Retrier(properties.getRetry(), nameScheduler,
+                () -> circuitBreaker.getState() == CircuitBreaker.State.CLOSED) : null;
+        this.hedger = properties.getHedge().isEnabled() ? new Hedger(properties.getHedge(), nameScheduler,
+                () -> circuitBreaker.getState() == CircuitBreaker.State.CLOSED) : null;
+        this.singleFlight = properties.isSingleFlight() ? new SingleFlight<>() : null;
+        this.cache = properties.getCache().isEnabled() ? new NameCache(properties.getCache(), this::fetchName) : null;
     }
 
-    public String getName(String from, String delay) {
-        try {
+    /**
+     * Asks the name service for a name without blocking the calling thread.
+     *
+     * @return Future completed with the name, or with the fallback name if the name service is unavailable.
+     */
+    public CompletableFuture<String> getName(String from, String delay) {
+        CompletableFuture<String> name = cache != null ? cache.get(from, delay) : fetchName(from, delay);
+        return name.thenApply(value -> value != null ? value : getFallbackName());
+    }
+
+    /**
+     * @return Future completed with the name, or with {@code null} if the name service is unavailable.
+     */
+    private CompletableFuture<String> fetchName(String from, String delay) {
+        // identical lookups in flight at the same time share one call
+        if (singleFlight != null) {
+            return singleFlight.execute(new NameRequest(from, delay), () -> lookUpName(from, delay));
+        }
+        return lookUpName(from, delay);
+    }
+
+    private CompletableFuture<String> lookUpName(String from, String delay) {
+        if (batcher != null) {
+            return batcher.submit(from, delay);
+        }
+        Supplier<CompletableFuture<String>> get = () -> guarded(host -> {
             if(delay == null) {
-                return restTemplate.getForObject(nameHost + "/api/name?from={from}", String.class, from);
+                return restTemplate.getForEntity(host + "/api/name?from={from}", String.class, from);
+            }
+            return restTemplate.getForEntity(host + "/api/name?from={from}&delay={delay}", String.class, from, delay);
+        });
+        // only the GET is retried, as far as HTTP is concerned POST /api/names is not idempotent
+        Supplier<CompletableFuture<String>> call = retrier != null ? () -> retrier.execute(get) : get;
+        return hedger != null ? hedger.execute(call) : call.get();
+    }
+
+    private CompletableFuture<String[]> lookUpNames(List<String> from, String delay) {
+        HttpEntity<List<String>> body = new HttpEntity<>(from);
+        return guarded(host -> {
+            if (delay == null) {
+                return restTemplate.postForEntity(host + "/api/names", body, String[].class);
             }
-            return restTemplate.getForObject(nameHost + "/api/name?from={from}&delay={delay}", String.class, from, delay);
+            return restTemplate.postForEntity(host + "/api/names?delay={delay}", body, String[].class, delay);
+        });
+    }
+
+    /**
+     * Sends a request to the name service through the circuit breaker and the bulkhead.
+     *
+     * @param request sends the request to the given name-service base URL
+     * @return Future completed with the response body, or with {@code null} if the name service is unavailable.
+     */
+    private <T> CompletableFuture<T> guarded(Function<String, ListenableFuture<ResponseEntity<T>>> request) {
+        // while our own breaker is open, don't even ask the sidecar
+        CircuitBreaker.Permit permit = circuitBreaker.tryAcquirePermission();
+        if (permit == null) {
+            callMetrics.recordRejected();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // beyond the bulkhead limits, fall back right away instead of piling up latency
+        return bulkhead.execute(() -> exchange(request, permit), () -> {
+            permit.release();
+            callMetrics.recordRejected();
+            return null;
+        }, permit::release);
+    }
+
+    /**
+     * Sends the request and settles its outcome exactly once: with the response, when the deadline passes, or when the
+     * caller cancels the call because a hedged call won. The outcome is also reported to the replica that was called.
+     */
+    private <T> CompletableFuture<T> exchange(Function<String, ListenableFuture<ResponseEntity<T>>> request,
+            CircuitBreaker.Permit permit) {
+        long start = System.nanoTime();
+        CompletableFuture<T> body = new CompletableFuture<>();
+        NameBalancer.Endpoint endpoint = balancer.choose();
+        endpoint.onStart();
+        ListenableFuture<ResponseEntity<T>> response;
+        try {
+            response = request.apply(endpoint.getUrl());
         } catch (RestClientException e) {
-            if (e instanceof HttpServerErrorException) {
-                HttpServerErrorException serverError = (HttpServerErrorException) e;
-                // check if we get a 503 error, which is what Istio will send when its CB is open
-                if (HttpStatus.SERVICE_UNAVAILABLE.equals(serverError.getStatusCode())) {
-                    isCBOpen.set(true);
-                    return getFallbackName();
+            long duration = System.nanoTime() - start;
+            permit.onError(duration);
+            bulkhead.onSample(duration, true);
+            endpoint.onError();
+            callMetrics.record(NameCallMetrics.outcomeOf(e), duration);
+            body.completeExceptionally(e);
+            return body;
+        }
+
+        AtomicBoolean settled = new AtomicBoolean();
+        if (timeoutMillis > 0) {
+            ScheduledFuture<?> deadline = scheduler.schedule(() -> {
+                if (settled.compareAndSet(false, true)) {
+                    long duration = System.nanoTime() - start;
+                    permit.onError(duration);
+                    bulkhead.onSample(duration, true);
+                    endpoint.onError();
+                    callMetrics.record(NameCallMetrics.Outcome.TIMEOUT, duration);
+                    response.cancel(true);
+                    body.complete(null);
                 }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            body.whenComplete((value, e) -> deadline.cancel(false));
+        }
+        body.whenComplete((value, e) -> {
+            // the loser of a hedged call: neither a success nor a failure of the name service
+            if (body.isCancelled() && settled.compareAndSet(false, true)) {
+                permit.release();
+                endpoint.onCancel();
+                response.cancel(true);
             }
+        });
 
-            throw e;
-        }
+        response.addCallback(entity -> {
+            if (!settled.compareAndSet(false, true)) {
+                return;
+            }
+            long duration = System.nanoTime() - start;
+            permit.onSuccess(duration);
+            bulkhead.onSample(duration, false);
+            endpoint.onSuccess(duration);
+            callMetrics.record(NameCallMetrics.Outcome.SUCCESS, duration);
+            if (hedger != null) {
+                hedger.onLatency(duration);
+            }
+            body.complete(entity.getBody());
+        }, e -> {
+            if (!settled.compareAndSet(false, true)) {
+                return;
+            }
+            long duration = System.nanoTime() - start;
+            permit.onError(duration);
+            bulkhead.onSample(duration, true);
+            endpoint.onError();
+            // check if we get a 503 error, which is what Istio will send when its CB is open
+            if (isServiceUnavailable(e)) {
+                callMetrics.record(NameCallMetrics.Outcome.UNAVAILABLE, duration);
+                body.complete(null);
+            } else {
+                callMetrics.record(NameCallMetrics.outcomeOf(e), duration);
+                body.completeExceptionally(e);
+            }
+        });
+        return body;
+    }
+
+    private boolean isServiceUnavailable(Throwable e) {
+        return e instanceof HttpServerErrorException
+                && HttpStatus.SERVICE_UNAVAILABLE.equals(((HttpServerErrorException) e).getStatusCode());
     }
 
     private String getFallbackName() {
-        return "Fallback";
+        return FALLBACK_NAME;
+    }
+
+    /**
+     * Exposes the call outcomes and latencies, the concurrency limiter, the balancer, the name cache, hedging, retries
+     * and the request coalescing on the actuator {@code /metrics} endpoint.
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        ConcurrencyLimit limit = bulkhead.getLimit();
+        Collection<Metric<?>> metrics = new ArrayList<>(callMetrics.metrics());
+        metrics.add(new Metric<>("name.limiter.limit", limit.getLimit()));
+        metrics.add(new Metric<>("name.limiter.rtt", limit.getRtt()));
+        metrics.add(new Metric<>("name.limiter.rtt.baseline", limit.getBaselineRtt()));
+        metrics.add(new Metric<>("name.balancer.endpoints", balancer.getEndpoints().size()));
+        metrics.add(new Metric<>("name.balancer.ejected", balancer.getEjectedEndpoints()));
+        metrics.add(new Metric<>("name.balancer.ejections", balancer.getTotalEjections()));
+        if (cache != null) {
+            CacheStats stats = cache.stats();
+            metrics.add(new Metric<>("name.cache.size", cache.size()));
+            metrics.add(new Metric<>("name.cache.hits", stats.hitCount()));
+            metrics.add(new Metric<>("name.cache.misses", stats.missCount()));
+            metrics.add(new Metric<>("name.cache.evictions", stats.evictionCount()));
+        }
+        if (hedger != null) {
+            metrics.add(new Metric<>("name.hedge.delay", hedger.getDelayNanos() / 1e6));
+            metrics.add(new Metric<>("name.hedge.calls", hedger.getHedgedCalls()));
+            metrics.add(new Metric<>("name.hedge.wins", hedger.getHedgeWins()));
+        }
+        if (retrier != null) {
+            metrics.add(new Metric<>("name.retry.calls", retrier.getRetries()));
+            metrics.add(new Metric<>("name.retry.budget-exhausted", retrier.getBudgetExhausted()));
+        }
+        if (singleFlight != null) {
+            metrics.add(new Metric<>("name.single-flight.in-flight", singleFlight.getInFlightCalls()));
+            metrics.add(new Metric<>("name.single-flight.coalesced", singleFlight.getCoalescedCalls()));
+        }
+        return metrics;
+    }
+
+    NameCallMetrics getCallMetrics() {
+        return callMetrics;
+    }
+
+    void addStateListener(Consumer<CircuitBreaker.State> listener) {
+        circuitBreaker.addListener(listener);
+    }
+
+    CircuitBreaker.State getCircuitBreakerState() {
+        return circuitBreaker.getState();
     }
 
     CircuitBreakerState getState() throws Exception {
-        return isCBOpen.get() ? CircuitBreakerState.OPEN : CircuitBreakerState.CLOSED;
+        return circuitBreaker.getMetrics()
+                .withBulkhead(bulkhead.getMetrics())
+                .withEndpoints(balancer.getEndpoints().stream()
+                        .map(NameBalancer.Endpoint::getState)
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * Key of a name lookup.
+     */
+    private static final class NameRequest {
+
+        private final String from;
+        private final String delay;
+
+        NameRequest(String from, String delay) {
+            this.from = from;
+            this.delay = delay;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof NameRequest)) {
+                return false;
+            }
+            NameRequest other = (NameRequest) o;
+            return Objects.equals(from, other.from) && Objects.equals(delay, other.delay);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(from) + Objects.hashCode(delay);
+        }
     }
 }
@@ -0,0 +1,892 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration of the name-service client, bound from the {@code name.*} properties.
+ * <p>
+ * System properties are part of the environment, so {@code -Dname.host=...} keeps working as before.
+ */
+@ConfigurationProperties(prefix = "name")
+public class NameServiceProperties {
+
+    /**
+     * Base URL of the name service.
+     */
+    private String host = "http://spring-boot-istio-circuit-breaker-name:8080";
+
+    /**
+     * Whether concurrent lookups for the same {@code from} and {@code delay} share a single call.
+     */
+    private boolean singleFlight = false;
+
+    /**
+     * Milliseconds a single call to the name service may take before it is cancelled and the fallback is used, 0 for
+     * no limit other than the read timeout.
+     */
+    private long timeout = 2000;
+
+    private final Client client = new Client();
+
+    private final Breaker breaker = new Breaker();
+
+    private final Bulkhead bulkhead = new Bulkhead();
+
+    private final Limiter limiter = new Limiter();
+
+    private final Cache cache = new Cache();
+
+    private final Batch batch = new Batch();
+
+    private final Hedge hedge = new Hedge();
+
+    private final Retry retry = new Retry();
+
+    private final Balancer balancer = new Balancer();
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public boolean isSingleFlight() {
+        return singleFlight;
+    }
+
+    public void setSingleFlight(boolean singleFlight) {
+        this.singleFlight = singleFlight;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public Client getClient() {
+        return client;
+    }
+
+    public Breaker getBreaker() {
+        return breaker;
+    }
+
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    public Limiter getLimiter() {
+        return limiter;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public Hedge getHedge() {
+        return hedge;
+    }
+
+    public Retry getRetry() {
+        return retry;
+    }
+
+    public Balancer getBalancer() {
+        return balancer;
+    }
+
+    public enum WindowType {
+        /**
+         * The window holds the outcome of the last {@code window-size} calls.
+         */
+        COUNT_BASED,
+        /**
+         * The window holds the outcome of the calls made in the last {@code window-size} seconds.
+         */
+        TIME_BASED
+    }
+
+    public enum ClientProtocol {
+        /**
+         * One call at a time per pooled connection.
+         */
+        HTTP_1_1,
+        /**
+         * HTTP/2 without TLS, with prior knowledge: the calls are multiplexed over a single connection per endpoint.
+         */
+        H2C
+    }
+
+    public enum BalancingStrategy {
+        /**
+         * Picks two endpoints at random and sends the call to the one with fewer calls in flight.
+         */
+        POWER_OF_TWO_CHOICES,
+        /**
+         * Sends the call to the endpoint with the fewest calls in flight.
+         */
+        LEAST_OUTSTANDING
+    }
+
+    public enum LimitAlgorithm {
+        /**
+         * The concurrency limit is always {@code name.bulkhead.max-concurrent-calls}.
+         */
+        FIXED,
+        /**
+         * Additive increase, multiplicative decrease on drops and timeouts.
+         */
+        AIMD,
+        /**
+         * Follows the gradient between the long-term and the current round trip time.
+         */
+        GRADIENT
+    }
+
+    /**
+     * HTTP client and connection pool settings. All durations are in milliseconds.
+     */
+    public static class Client {
+
+        /**
+         * Protocol spoken to the name service, which has to be started with {@code server.http2.enabled=true} for
+         * {@code H2C}.
+         */
+        private ClientProtocol protocol = ClientProtocol.HTTP_1_1;
+
+        /**
+         * Maximum number of pooled connections to a single name-service route.
+         */
+        private int maxPerRoute = 50;
+
+        /**
+         * Maximum number of pooled connections in total.
+         */
+        private int maxTotal = 100;
+
+        /**
+         * Time to establish a TCP connection.
+         */
+        private int connectTimeout = 1000;
+
+        /**
+         * Time to wait for data once the connection is established.
+         */
+        private int readTimeout = 5000;
+
+        /**
+         * Time to wait for a connection to be leased from the pool.
+         */
+        private int poolAcquireTimeout = 500;
+
+        /**
+         * Connections idle for longer than this are evicted from the pool.
+         */
+        private long idleEviction = 30000;
+
+        /**
+         * How long a connection is kept alive when the server does not send a Keep-Alive header.
+         */
+        private long keepAlive = 60000;
+
+        /**
+         * Number of I/O dispatcher threads of the non-blocking client.
+         */
+        private int ioThreads = Runtime.getRuntime().availableProcessors();
+
+        public int getMaxPerRoute() {
+            return maxPerRoute;
+        }
+
+        public void setMaxPerRoute(int maxPerRoute) {
+            this.maxPerRoute = maxPerRoute;
+        }
+
+        public int getMaxTotal() {
+            return maxTotal;
+        }
+
+        public void setMaxTotal(int maxTotal) {
+            this.maxTotal = maxTotal;
+        }
+
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public int getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(int readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public int getPoolAcquireTimeout() {
+            return poolAcquireTimeout;
+        }
+
+        public void setPoolAcquireTimeout(int poolAcquireTimeout) {
+            this.poolAcquireTimeout = poolAcquireTimeout;
+        }
+
+        public long getIdleEviction() {
+            return idleEviction;
+        }
+
+        public void setIdleEviction(long idleEviction) {
+            this.idleEviction = idleEviction;
+        }
+
+        public long getKeepAlive() {
+            return keepAlive;
+        }
+
+        public void setKeepAlive(long keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        public int getIoThreads() {
+            return ioThreads;
+        }
+
+        public void setIoThreads(int ioThreads) {
+            this.ioThreads = ioThreads;
+        }
+
+        public ClientProtocol getProtocol() {
+            return protocol;
+        }
+
+        public void setProtocol(ClientProtocol protocol) {
+            this.protocol = protocol;
+        }
+    }
+
+    /**
+     * In-process circuit breaker settings. All durations are in milliseconds.
+     */
+    public static class Breaker {
+
+        private WindowType windowType = WindowType.COUNT_BASED;
+
+        /**
+         * Number of calls, or number of seconds, held by the sliding window.
+         */
+        private int windowSize = 100;
+
+        /**
+         * Minimum number of calls in the window before the failure rates are evaluated.
+         */
+        private int minimumCalls = 10;
+
+        /**
+         * Failure rate percentage at which the breaker opens.
+         */
+        private float failureRateThreshold = 50;
+
+        /**
+         * Slow call rate percentage at which the breaker opens.
+         */
+        private float slowCallRateThreshold = 100;
+
+        /**
+         * Calls taking at least this long are considered slow.
+         */
+        private long slowCallDuration = 1000;
+
+        /**
+         * Time the breaker stays open before letting probe calls through.
+         */
+        private long waitInOpen = 5000;
+
+        /**
+         * Time the breaker waits for the outcome of its probe calls before it opens again, 0 to wait forever.
+         */
+        private long maxWaitInHalfOpen = 10000;
+
+        /**
+         * Number of probe calls permitted while half-open.
+         */
+        private int halfOpenCalls = 3;
+
+        public WindowType getWindowType() {
+            return windowType;
+        }
+
+        public void setWindowType(WindowType windowType) {
+            this.windowType = windowType;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public float getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(float failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public float getSlowCallRateThreshold() {
+            return slowCallRateThreshold;
+        }
+
+        public void setSlowCallRateThreshold(float slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+        }
+
+        public long getSlowCallDuration() {
+            return slowCallDuration;
+        }
+
+        public void setSlowCallDuration(long slowCallDuration) {
+            this.slowCallDuration = slowCallDuration;
+        }
+
+        public long getWaitInOpen() {
+            return waitInOpen;
+        }
+
+        public void setWaitInOpen(long waitInOpen) {
+            this.waitInOpen = waitInOpen;
+        }
+
+        public long getMaxWaitInHalfOpen() {
+            return maxWaitInHalfOpen;
+        }
+
+        public void setMaxWaitInHalfOpen(long maxWaitInHalfOpen) {
+            this.maxWaitInHalfOpen = maxWaitInHalfOpen;
+        }
+
+        public int getHalfOpenCalls() {
+            return halfOpenCalls;
+        }
+
+        public void setHalfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+        }
+    }
+
+    /**
+     * Bulkhead settings. All durations are in milliseconds.
+     */
+    public static class Bulkhead {
+
+        /**
+         * Maximum number of calls to the name service in flight at the same time.
+         */
+        private int maxConcurrentCalls = 100;
+
+        /**
+         * Maximum number of calls waiting for a free slot; further calls get the fallback right away.
+         */
+        private int maxQueue = 50;
+
+        /**
+         * Maximum time a call waits for a free slot before getting the fallback.
+         */
+        private long maxWait = 100;
+
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+        }
+
+        public int getMaxQueue() {
+            return maxQueue;
+        }
+
+        public void setMaxQueue(int maxQueue) {
+            this.maxQueue = maxQueue;
+        }
+
+        public long getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(long maxWait) {
+            this.maxWait = maxWait;
+        }
+    }
+
+    /**
+     * Adaptive concurrency limiter settings. The limit never exceeds {@code name.bulkhead.max-concurrent-calls}.
+     */
+    public static class Limiter {
+
+        private LimitAlgorithm algorithm = LimitAlgorithm.FIXED;
+
+        private int initialLimit = 20;
+
+        private int minLimit = 1;
+
+        /**
+         * AIMD: factor applied to the limit on a drop.
+         */
+        private double backoffRatio = 0.9;
+
+        /**
+         * AIMD: calls taking longer than this many milliseconds count as drops.
+         */
+        private long timeout = 1000;
+
+        /**
+         * Gradient: how much the current round trip time may exceed the baseline before the limit shrinks.
+         */
+        private double tolerance = 1.5;
+
+        /**
+         * Gradient: weight of a new limit estimate, between 0 and 1.
+         */
+        private double smoothing = 0.2;
+
+        /**
+         * Gradient: number of samples averaged into the baseline round trip time.
+         */
+        private int longWindow = 600;
+
+        public LimitAlgorithm getAlgorithm() {
+            return algorithm;
+        }
+
+        public void setAlgorithm(LimitAlgorithm algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public double getBackoffRatio() {
+            return backoffRatio;
+        }
+
+        public void setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        public double getTolerance() {
+            return tolerance;
+        }
+
+        public void setTolerance(double tolerance) {
+            this.tolerance = tolerance;
+        }
+
+        public double getSmoothing() {
+            return smoothing;
+        }
+
+        public void setSmoothing(double smoothing) {
+            this.smoothing = smoothing;
+        }
+
+        public int getLongWindow() {
+            return longWindow;
+        }
+
+        public void setLongWindow(int longWindow) {
+            this.longWindow = longWindow;
+        }
+    }
+
+    /**
+     * Local name cache settings. All durations are in milliseconds.
+     */
+    public static class Cache {
+
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of cached names.
+         */
+        private long maximumSize = 10000;
+
+        /**
+         * Names older than this are refreshed in the background while still being served.
+         */
+        private long refreshAfter = 10000;
+
+        /**
+         * Names are not served any more once they are this old.
+         */
+        private long expireAfter = 60000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public long getRefreshAfter() {
+            return refreshAfter;
+        }
+
+        public void setRefreshAfter(long refreshAfter) {
+            this.refreshAfter = refreshAfter;
+        }
+
+        public long getExpireAfter() {
+            return expireAfter;
+        }
+
+        public void setExpireAfter(long expireAfter) {
+            this.expireAfter = expireAfter;
+        }
+    }
+
+    /**
+     * Micro-batching settings.
+     */
+    public static class Batch {
+
+        private boolean enabled = false;
+
+        /**
+         * Milliseconds lookups are gathered before a batch is sent.
+         */
+        private long window = 2;
+
+        /**
+         * A batch with this many lookups is sent right away.
+         */
+        private int maxSize = 50;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getWindow() {
+            return window;
+        }
+
+        public void setWindow(long window) {
+            this.window = window;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * Hedged request settings. All durations are in milliseconds.
+     */
+    public static class Hedge {
+
+        private boolean enabled = false;
+
+        /**
+         * Time after which a second call is sent if the first one has not answered, 0 to use the observed p95 latency.
+         */
+        private long delay = 0;
+
+        /**
+         * Lower bound of the observed p95 latency used as delay.
+         */
+        private long minDelay = 5;
+
+        /**
+         * Maximum share of calls, in percent, that may be hedged.
+         */
+        private double budget = 5;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getDelay() {
+            return delay;
+        }
+
+        public void setDelay(long delay) {
+            this.delay = delay;
+        }
+
+        public long getMinDelay() {
+            return minDelay;
+        }
+
+        public void setMinDelay(long minDelay) {
+            this.minDelay = minDelay;
+        }
+
+        public double getBudget() {
+            return budget;
+        }
+
+        public void setBudget(double budget) {
+            this.budget = budget;
+        }
+    }
+
+    /**
+     * Retry settings for single name lookups. All durations are in milliseconds.
+     */
+    public static class Retry {
+
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of attempts, including the first one.
+         */
+        private int maxAttempts = 3;
+
+        /**
+         * Shortest delay between two attempts.
+         */
+        private long baseDelay = 10;
+
+        /**
+         * Longest delay between two attempts.
+         */
+        private long maxDelay = 200;
+
+        /**
+         * Maximum number of retries, in percent of the lookups.
+         */
+        private double budget = 10;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getBaseDelay() {
+            return baseDelay;
+        }
+
+        public void setBaseDelay(long baseDelay) {
+            this.baseDelay = baseDelay;
+        }
+
+        public long getMaxDelay() {
+            return maxDelay;
+        }
+
+        public void setMaxDelay(long maxDelay) {
+            this.maxDelay = maxDelay;
+        }
+
+        public double getBudget() {
+            return budget;
+        }
+
+        public void setBudget(double budget) {
+            this.budget = budget;
+        }
+    }
+
+    /**
+     * Client-side load balancing and outlier detection across name-service replicas. All durations are in milliseconds.
+     */
+    public static class Balancer {
+
+        /**
+         * Base URLs of the name-service replicas; when empty, {@code name.host} is the only endpoint.
+         */
+        private List<String> endpoints = new ArrayList<>();
+
+        /**
+         * How often the host of {@code name.host} is resolved to find all replicas, 0 to not resolve it. Only useful
+         * without a service mesh, e.g. with a headless Kubernetes service.
+         */
+        private long dnsRefresh = 0;
+
+        private BalancingStrategy strategy = BalancingStrategy.POWER_OF_TWO_CHOICES;
+
+        /**
+         * Number of consecutive failures after which an endpoint is ejected.
+         */
+        private int consecutiveErrors = 5;
+
+        /**
+         * An endpoint is ejected for this long times the number of times it was ejected.
+         */
+        private long baseEjectionTime = 5000;
+
+        /**
+         * Maximum percentage of the endpoints that may be ejected at the same time.
+         */
+        private int maxEjectionPercent = 50;
+
+        /**
+         * An endpoint whose average latency exceeds this many times the median of all endpoints is ejected, 0 to
+         * never eject on latency.
+         */
+        private double latencyOutlierFactor = 3;
+
+        /**
+         * How often the endpoint latencies are compared.
+         */
+        private long interval = 1000;
+
+        public List<String> getEndpoints() {
+            return endpoints;
+        }
+
+        public void setEndpoints(List<String> endpoints) {
+            this.endpoints = endpoints;
+        }
+
+        public long getDnsRefresh() {
+            return dnsRefresh;
+        }
+
+        public void setDnsRefresh(long dnsRefresh) {
+            this.dnsRefresh = dnsRefresh;
+        }
+
+        public BalancingStrategy getStrategy() {
+            return strategy;
+        }
+
+        public void setStrategy(BalancingStrategy strategy) {
+            this.strategy = strategy;
+        }
+
+        public int getConsecutiveErrors() {
+            return consecutiveErrors;
+        }
+
+        public void setConsecutiveErrors(int consecutiveErrors) {
+            this.consecutiveErrors = consecutiveErrors;
+        }
+
+        public long getBaseEjectionTime() {
+            return baseEjectionTime;
+        }
+
+        public void setBaseEjectionTime(long baseEjectionTime) {
+            this.baseEjectionTime = baseEjectionTime;
+        }
+
+        public int getMaxEjectionPercent() {
+            return maxEjectionPercent;
+        }
+
+        public void setMaxEjectionPercent(int maxEjectionPercent) {
+            this.maxEjectionPercent = maxEjectionPercent;
+        }
+
+        public double getLatencyOutlierFactor() {
+            return latencyOutlierFactor;
+        }
+
+        public void setLatencyOutlierFactor(double latencyOutlierFactor) {
+            this.latencyOutlierFactor = latencyOutlierFactor;
+        }
+
+        public long getInterval() {
+            return interval;
+        }
+
+        public void setInterval(long interval) {
+            this.interval = interval;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.Collection;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.endpoint.mvc.AbstractMvcEndpoint;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Actuator endpoint serving the metrics in the Prometheus text format on {@code /prometheus}.
+ * <p>
+ * The name-service calls are a summary with p50, p99 and p99.9 by outcome; everything else published on
+ * {@code /metrics} is exported as a gauge. Like {@code /metrics} it is sensitive unless
+ * {@code endpoints.prometheus.sensitive=false}.
+ */
+@Component
+@ConfigurationProperties(prefix = "endpoints.prometheus")
+public class PrometheusEndpoint extends AbstractMvcEndpoint {
+
+    private static final MediaType CONTENT_TYPE = MediaType.parseMediaType("text/plain;version=0.0.4;charset=utf-8");
+
+    private final NameService nameService;
+
+    private final Collection<PublicMetrics> publicMetrics;
+
+    public PrometheusEndpoint(NameService nameService, Collection<PublicMetrics> publicMetrics) {
+        super("/prometheus", true);
+        this.nameService = nameService;
+        this.publicMetrics = publicMetrics;
+    }
+
+    // no produces condition: it would also apply to the error page of a 401 and turn it into a 406
+    @GetMapping
+    @ResponseBody
+    public ResponseEntity<String> invoke() {
+        StringBuilder out = new StringBuilder(4096);
+        nameService.getCallMetrics().writePrometheus(out);
+        for (PublicMetrics source : publicMetrics) {
+            for (Metric<?> metric : source.metrics()) {
+                // already exported above as a summary
+                if (metric.getName().startsWith("name.call.")) {
+                    continue;
+                }
+                String name = sanitize(metric.getName());
+                out.append("# TYPE ").append(name).append(" gauge\n");
+                out.append(name).append(' ').append(metric.getValue().doubleValue()).append('\n');
+            }
+        }
+        return ResponseEntity.ok().contentType(CONTENT_TYPE).body(out.toString());
+    }
+
+    private static String sanitize(String name) {
+        StringBuilder sanitized = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || c == ':' || i > 0 && c >= '0' && c <= '9';
+            sanitized.append(valid ? c : '_');
+        }
+        return sanitized.toString();
+    }
+}
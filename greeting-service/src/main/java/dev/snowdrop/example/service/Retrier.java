@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+/**
+ * Retries idempotent calls that failed on a transient error: a reset or refused connection, or a 502.
+ * <p>
+ * Attempts are spaced with decorrelated jitter, each delay being random between the base delay and three times the
+ * previous one, and never longer than the maximum delay. Retries are spent from a {@link TokenBudget}, and stop as
+ * soon as the circuit breaker is no longer closed, in which case the caller gets the fallback. A 503 is never retried:
+ * it means the name service, or the Istio proxy in front of it, is overloaded. Timeouts are not retried either.
+ */
+class Retrier {
+
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final ScheduledExecutorService scheduler;
+    private final BooleanSupplier allowed;
+    private final TokenBudget budget;
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    /**
+     * @param allowed whether retrying is allowed at the moment, i.e. while the circuit breaker is closed
+     */
+    Retrier(NameServiceProperties.Retry config, ScheduledExecutorService scheduler, BooleanSupplier allowed) {
+        this.maxAttempts = Math.max(1, config.getMaxAttempts());
+        this.baseDelay = config.getBaseDelay();
+        this.maxDelay = Math.max(config.getBaseDelay(), config.getMaxDelay());
+        this.scheduler = scheduler;
+        this.allowed = allowed;
+        this.budget = new TokenBudget(config.getBudget(), 10);
+    }
+
+    /**
+     * @return Future of the first successful attempt, of {@code null} if retrying stopped because the breaker opened, or
+     *         of the last failure.
+     */
+    <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call) {
+        budget.deposit();
+        Attempts<T> attempts = new Attempts<>(call);
+        attempts.next(1, baseDelay);
+        return attempts.result;
+    }
+
+    long getRetries() {
+        return retries.sum();
+    }
+
+    long getBudgetExhausted() {
+        return budgetExhausted.sum();
+    }
+
+    static boolean isRetryable(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpServerErrorException) {
+                return HttpStatus.BAD_GATEWAY.equals(((HttpServerErrorException) cause).getStatusCode());
+            }
+            if (cause instanceof InterruptedIOException) {
+                return false;
+            }
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class Attempts<T> {
+
+        private final Supplier<CompletableFuture<T>> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private volatile CompletableFuture<T> current;
+
+        Attempts(Supplier<CompletableFuture<T>> call) {
+            this.call = call;
+            result.whenComplete((value, e) -> {
+                CompletableFuture<T> attempt = current;
+                if (result.isCancelled() && attempt != null) {
+                    attempt.cancel(true);
+                }
+            });
+        }
+
+        void next(int attempt, long previousDelay) {
+            CompletableFuture<T> future;
+            try {
+                future = call.get();
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            current = future;
+            future.whenComplete((value, e) -> {
+                if (e == null) {
+                    result.complete(value);
+                } else if (result.isDone() || attempt >= maxAttempts || !isRetryable(e)) {
+                    result.completeExceptionally(e);
+                } else if (!allowed.getAsBoolean()) {
+                    result.complete(null);
+                } else if (!budget.tryWithdraw()) {
+                    budgetExhausted.increment();
+                    result.completeExceptionally(e);
+                } else {
+                    long upper = Math.max(baseDelay, previousDelay * 3);
+                    long delay = Math.min(maxDelay, ThreadLocalRandom.current().nextLong(baseDelay, upper + 1));
+                    retries.increment();
+                    scheduler.schedule(() -> {
+                        if (!result.isDone()) {
+                            next(attempt + 1, delay);
+                        }
+                    }, delay, TimeUnit.MILLISECONDS);
+                }
+            });
+        }
+    }
+}
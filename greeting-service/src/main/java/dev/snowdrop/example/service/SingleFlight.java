@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key into one: while a call for a key is in flight, further callers get the
+ * same future instead of starting another call.
+ * <p>
+ * The in-flight calls are kept in a {@link ConcurrentHashMap} and claimed with {@code putIfAbsent}, so a caller that
+ * joins an existing call never takes a lock. A key is removed before its future completes, so a caller arriving later
+ * starts a fresh call rather than reusing a stale result.
+ */
+class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    private final LongAdder coalescedCalls = new LongAdder();
+
+    CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> existing = calls.get(key);
+        if (existing != null) {
+            coalescedCalls.increment();
+            return existing;
+        }
+
+        CompletableFuture<V> promise = new CompletableFuture<>();
+        existing = calls.putIfAbsent(key, promise);
+        if (existing != null) {
+            coalescedCalls.increment();
+            return existing;
+        }
+
+        CompletableFuture<V> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            calls.remove(key, promise);
+            promise.completeExceptionally(e);
+            return promise;
+        }
+        result.whenComplete((value, e) -> {
+            calls.remove(key, promise);
+            if (e == null) {
+                promise.complete(value);
+            } else {
+                promise.completeExceptionally(e);
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * @return Number of calls that joined an in-flight call since the service started.
+     */
+    long getCoalescedCalls() {
+        return coalescedCalls.sum();
+    }
+
+    int getInFlightCalls() {
+        return calls.size();
+    }
+}
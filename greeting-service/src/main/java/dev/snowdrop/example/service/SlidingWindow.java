@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+/**
+ * Sliding window of call outcomes used by the {@link CircuitBreaker}.
+ * <p>
+ * Implementations are lock-free: recording an outcome never blocks the calling thread.
+ */
+interface SlidingWindow {
+
+    /**
+     * Records the outcome of a single call.
+     *
+     * @param failure whether the call failed
+     * @param slow whether the call took longer than the slow call threshold
+     */
+    void record(boolean failure, boolean slow);
+
+    /**
+     * @return Aggregated statistics of the calls currently in the window.
+     */
+    Snapshot snapshot();
+
+    /**
+     * Discards all recorded outcomes.
+     */
+    void reset();
+
+    /**
+     * Point-in-time view of a sliding window.
+     */
+    final class Snapshot {
+
+        private final int calls;
+        private final int failedCalls;
+        private final int slowCalls;
+
+        Snapshot(int calls, int failedCalls, int slowCalls) {
+            this.calls = calls;
+            this.failedCalls = failedCalls;
+            this.slowCalls = slowCalls;
+        }
+
+        int getCalls() {
+            return calls;
+        }
+
+        int getFailedCalls() {
+            return failedCalls;
+        }
+
+        int getSlowCalls() {
+            return slowCalls;
+        }
+
+        /**
+         * @return Percentage of failed calls, 0 when the window is empty.
+         */
+        float getFailureRate() {
+            return calls == 0 ? 0 : failedCalls * 100f / calls;
+        }
+
+        /**
+         * @return Percentage of slow calls, 0 when the window is empty.
+         */
+        float getSlowCallRate() {
+            return calls == 0 ? 0 : slowCalls * 100f / calls;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Sliding window over the calls of the last N seconds, kept in a ring buffer of one-second buckets.
+ * <p>
+ * A bucket is a single {@code long} packing the second it belongs to with its call, failure and slow call counts, so it
+ * can be updated (and recycled when a new second starts) with one compare-and-set. Counts saturate at 65535 per
+ * second.
+ */
+class TimeSlidingWindow implements SlidingWindow {
+
+    private static final int FIELD_BITS = 16;
+    private static final long FIELD_MASK = 0xFFFF;
+    private static final int TAG_SHIFT = 3 * FIELD_BITS;
+    private static final int CALLS_SHIFT = 2 * FIELD_BITS;
+    private static final int FAILURES_SHIFT = FIELD_BITS;
+    private static final int SLOW_SHIFT = 0;
+
+    private final int size;
+    private final AtomicLongArray buckets;
+    private final LongSupplier nanoClock;
+
+    TimeSlidingWindow(int seconds) {
+        this(seconds, System::nanoTime);
+    }
+
+    TimeSlidingWindow(int seconds, LongSupplier nanoClock) {
+        if (seconds < 1 || seconds > FIELD_MASK / 2) {
+            throw new IllegalArgumentException("Window size must be between 1 and " + FIELD_MASK / 2 + " seconds: " + seconds);
+        }
+        this.size = seconds;
+        this.buckets = new AtomicLongArray(seconds);
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public void record(boolean failure, boolean slow) {
+        long second = currentSecond();
+        int index = (int) Math.floorMod(second, (long) size);
+        long tag = second & FIELD_MASK;
+        while (true) {
+            long current = buckets.get(index);
+            long bucket = field(current, TAG_SHIFT) == tag ? current : tag << TAG_SHIFT;
+            bucket = increment(bucket, CALLS_SHIFT);
+            if (failure) {
+                bucket = increment(bucket, FAILURES_SHIFT);
+            }
+            if (slow) {
+                bucket = increment(bucket, SLOW_SHIFT);
+            }
+            if (buckets.compareAndSet(index, current, bucket)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        long tag = currentSecond() & FIELD_MASK;
+        int calls = 0;
+        int failedCalls = 0;
+        int slowCalls = 0;
+        for (int index = 0; index < size; index++) {
+            long bucket = buckets.get(index);
+            long age = (tag - field(bucket, TAG_SHIFT)) & FIELD_MASK;
+            if (age < size) {
+                calls += field(bucket, CALLS_SHIFT);
+                failedCalls += field(bucket, FAILURES_SHIFT);
+                slowCalls += field(bucket, SLOW_SHIFT);
+            }
+        }
+        return new Snapshot(calls, failedCalls, slowCalls);
+    }
+
+    @Override
+    public void reset() {
+        for (int index = 0; index < size; index++) {
+            buckets.set(index, 0);
+        }
+    }
+
+    private long currentSecond() {
+        return Math.floorDiv(nanoClock.getAsLong(), TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static int field(long bucket, int shift) {
+        return (int) ((bucket >>> shift) & FIELD_MASK);
+    }
+
+    private static long increment(long bucket, int shift) {
+        return field(bucket, shift) == FIELD_MASK ? bucket : bucket + (1L << shift);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket capping extra calls, such as retries or hedges, to a share of the regular calls.
+ * <p>
+ * Every regular call earns {@code percent} percent of a token and every extra call spends a whole one. The bucket
+ * starts full and holds at most {@code maxTokens}, which allows a short burst after a quiet period but never more than
+ * the configured share over time.
+ */
+class TokenBudget {
+
+    private static final long TOKEN = 1000;
+
+    private final long earnedPerCall;
+    private final long capacity;
+    private final AtomicLong balance;
+
+    TokenBudget(double percent, int maxTokens) {
+        this.earnedPerCall = Math.round(percent * TOKEN / 100);
+        this.capacity = maxTokens * TOKEN;
+        this.balance = new AtomicLong(capacity);
+    }
+
+    /**
+     * Records a regular call.
+     */
+    void deposit() {
+        add(earnedPerCall);
+    }
+
+    /**
+     * @return {@code true} if an extra call may be made
+     */
+    boolean tryWithdraw() {
+        while (true) {
+            long current = balance.get();
+            if (current < TOKEN) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - TOKEN)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a token that was withdrawn but not used.
+     */
+    void refund() {
+        add(TOKEN);
+    }
+
+    private void add(long amount) {
+        long current;
+        do {
+            current = balance.get();
+        } while (current < capacity && !balance.compareAndSet(current, Math.min(capacity, current + amount)));
+    }
+}
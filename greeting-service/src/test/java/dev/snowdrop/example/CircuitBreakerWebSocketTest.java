@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.ServerSocket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.embedded.LocalServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+/**
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "name.host=http://localhost:${closed.port}", "name.breaker.minimum-calls=2", "name.breaker.window-size=2",
+        "name.breaker.wait-in-open=60000" })
+public class CircuitBreakerWebSocketTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @BeforeClass
+    public static void reserveClosedPort() throws Exception {
+        // nothing listens on this port once the socket is closed, so every name call is refused
+        try (ServerSocket socket = new ServerSocket(0)) {
+            System.setProperty("closed.port", String.valueOf(socket.getLocalPort()));
+        }
+    }
+
+    @AfterClass
+    public static void clearClosedPort() {
+        System.clearProperty("closed.port");
+    }
+
+    @Test
+    public void testPushesTheStateOnConnectAndOnTransition() throws Exception {
+        BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        WebSocketSession session = new StandardWebSocketClient().doHandshake(new TextWebSocketHandler() {
+            @Override
+            protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+                messages.add(message.getPayload());
+            }
+        }, "ws://localhost:{port}/cb-ws", port).get(5, TimeUnit.SECONDS);
+
+        try {
+            assertThat(messages.poll(5, TimeUnit.SECONDS)).isEqualTo("isOpen:false");
+
+            for (int i = 0; i < 2; i++) {
+                restTemplate.getForEntity("/api/greeting", String.class);
+            }
+
+            assertThat(messages.poll(5, TimeUnit.SECONDS)).isEqualTo("isOpen:true");
+        } finally {
+            session.close();
+        }
+    }
+}
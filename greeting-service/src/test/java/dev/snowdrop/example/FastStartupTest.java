@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = { "journal.enabled=true", "journal.directory=target/fast-startup-journal" })
+@ActiveProfiles("fast-startup")
+public class FastStartupTest {
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Test
+    public void testJournalStartsWithContext() {
+        assertThat(context.getBeanFactory().getBeanDefinition("breakerJournal").isLazyInit()).isFalse();
+        assertThat(context.getBeanFactory().containsSingleton("breakerJournal")).isTrue();
+    }
+
+    @Test
+    public void testControllersAreLazy() {
+        assertThat(context.getBeanFactory().getBeanDefinition("greetingController").isLazyInit()).isTrue();
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dev.snowdrop.example.common.OutcomeStatistics;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ */
+public class BreakerJournalTest {
+
+    private static final long START = 1_500_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicLong wallClock = new AtomicLong(START);
+
+    private final OutcomeStatistics statistics = new OutcomeStatistics(10, clock::get);
+
+    @Test
+    public void testJournalsTransitionsAndSeconds() throws IOException {
+        BreakerJournal journal = journal(1 << 20, 10);
+
+        statistics.record(OutcomeStatistics.Outcome.PASSED, TimeUnit.MILLISECONDS.toNanos(2));
+        statistics.record(OutcomeStatistics.Outcome.FALLBACK, TimeUnit.MILLISECONDS.toNanos(2));
+        journal.onTransition(CircuitBreaker.State.OPEN);
+        advance(1);
+        journal.flush();
+
+        assertThat(read(journal, 0, Long.MAX_VALUE)).isEqualTo(
+                "{\"time\":\"2017-07-14T02:40:00Z\",\"event\":\"transition\",\"state\":\"open\"}\n"
+                + "{\"time\":\"2017-07-14T02:40:00Z\",\"event\":\"second\",\"passed\":1,\"fallback\":1,\"errors\":0,"
+                + "\"p50\":2.048,\"p99\":2.048}\n");
+    }
+
+    @Test
+    public void testWritesEverySecondOnceWhateverTheFlushTiming() throws IOException {
+        BreakerJournal journal = journal(1 << 20, 10);
+
+        statistics.record(OutcomeStatistics.Outcome.PASSED, TimeUnit.MILLISECONDS.toNanos(2));
+        advance(1);
+        journal.flush();
+        // early: no second is over since
+        journal.flush();
+        statistics.record(OutcomeStatistics.Outcome.FALLBACK, TimeUnit.MILLISECONDS.toNanos(2));
+        advance(1);
+        statistics.record(OutcomeStatistics.Outcome.ERROR, TimeUnit.MILLISECONDS.toNanos(2));
+        advance(1);
+        // late: two seconds are over since
+        journal.flush();
+
+        assertThat(read(journal, 0, Long.MAX_VALUE).split("\n")).containsExactly(
+                "{\"time\":\"2017-07-14T02:40:00Z\",\"event\":\"second\",\"passed\":1,\"fallback\":0,\"errors\":0,"
+                        + "\"p50\":2.048,\"p99\":2.048}",
+                "{\"time\":\"2017-07-14T02:40:01Z\",\"event\":\"second\",\"passed\":0,\"fallback\":1,\"errors\":0,"
+                        + "\"p50\":2.048,\"p99\":2.048}",
+                "{\"time\":\"2017-07-14T02:40:02Z\",\"event\":\"second\",\"passed\":0,\"fallback\":0,\"errors\":1,"
+                        + "\"p50\":2.048,\"p99\":2.048}");
+    }
+
+    @Test
+    public void testSkipsIdleSeconds() throws IOException {
+        BreakerJournal journal = journal(1 << 20, 10);
+
+        advance(1);
+        journal.flush();
+
+        assertThat(read(journal, 0, Long.MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    public void testReadsTimeRangeAcrossSegments() throws IOException {
+        // room for the header and three records per segment
+        BreakerJournal journal = journal(4 * BreakerJournal.RECORD_SIZE, 10);
+        for (int i = 0; i < 10; i++) {
+            journal.onTransition(i % 2 == 0 ? CircuitBreaker.State.OPEN : CircuitBreaker.State.CLOSED);
+            advance(1);
+            journal.flush();
+        }
+
+        assertThat(folder.getRoot().listFiles()).hasSize(4);
+        assertThat(read(journal, 0, Long.MAX_VALUE).split("\n")).hasSize(10);
+        String range = read(journal, START + 3000, START + 5000);
+        assertThat(range.split("\n")).containsExactly(
+                "{\"time\":\"2017-07-14T02:40:03Z\",\"event\":\"transition\",\"state\":\"closed\"}",
+                "{\"time\":\"2017-07-14T02:40:04Z\",\"event\":\"transition\",\"state\":\"open\"}",
+                "{\"time\":\"2017-07-14T02:40:05Z\",\"event\":\"transition\",\"state\":\"closed\"}");
+    }
+
+    @Test
+    public void testDeletesOldestSegments() throws IOException {
+        BreakerJournal journal = journal(2 * BreakerJournal.RECORD_SIZE, 2);
+        for (int i = 0; i < 5; i++) {
+            journal.onTransition(CircuitBreaker.State.OPEN);
+            advance(1);
+            journal.flush();
+        }
+
+        assertThat(folder.getRoot().listFiles()).hasSize(2);
+        assertThat(read(journal, 0, Long.MAX_VALUE).split("\n")).hasSize(2);
+    }
+
+    @Test
+    public void testAppendsToTheLastSegmentAfterARestart() throws Exception {
+        BreakerJournal journal = journal(1 << 20, 10);
+        journal.onTransition(CircuitBreaker.State.OPEN);
+        journal.shutdown();
+        advance(1);
+
+        journal = journal(1 << 20, 10);
+        journal.onTransition(CircuitBreaker.State.CLOSED);
+        journal.shutdown();
+
+        assertThat(folder.getRoot().listFiles()).hasSize(1);
+        assertThat(read(journal, 0, Long.MAX_VALUE).split("\n")).containsExactly(
+                "{\"time\":\"2017-07-14T02:40:00Z\",\"event\":\"transition\",\"state\":\"open\"}",
+                "{\"time\":\"2017-07-14T02:40:01Z\",\"event\":\"transition\",\"state\":\"closed\"}");
+    }
+
+    @Test
+    public void testStartsANewSegmentAfterARestartWhenTheLastIsFull() throws Exception {
+        // room for the header and one record per segment
+        BreakerJournal journal = journal(2 * BreakerJournal.RECORD_SIZE, 10);
+        journal.onTransition(CircuitBreaker.State.OPEN);
+        journal.shutdown();
+        advance(1);
+
+        journal = journal(2 * BreakerJournal.RECORD_SIZE, 10);
+        journal.onTransition(CircuitBreaker.State.CLOSED);
+        journal.shutdown();
+
+        assertThat(folder.getRoot().listFiles()).hasSize(2);
+        assertThat(read(journal, 0, Long.MAX_VALUE).split("\n")).hasSize(2);
+    }
+
+    @Test
+    public void testStartsANewSegmentAfterARestartWithAnotherSegmentSize() throws Exception {
+        BreakerJournal journal = journal(1 << 20, 10);
+        journal.onTransition(CircuitBreaker.State.OPEN);
+        journal.shutdown();
+        advance(1);
+
+        journal = journal(1 << 10, 10);
+        journal.onTransition(CircuitBreaker.State.CLOSED);
+        journal.shutdown();
+
+        assertThat(folder.getRoot().listFiles()).hasSize(2);
+        assertThat(read(journal, 0, Long.MAX_VALUE).split("\n")).hasSize(2);
+    }
+
+    private BreakerJournal journal(long segmentSize, int maxSegments) throws IOException {
+        return new BreakerJournal(folder.getRoot(), segmentSize, maxSegments, statistics, wallClock::get);
+    }
+
+    private void advance(int seconds) {
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+        wallClock.addAndGet(TimeUnit.SECONDS.toMillis(seconds));
+    }
+
+    private static String read(BreakerJournal journal, long from, long to) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        journal.writeJson(from, to, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ */
+public class BulkheadTest {
+
+    private final List<CompletableFuture<String>> calls = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger cancelled = new AtomicInteger();
+
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void setup() {
+        scheduler = new ScheduledThreadPoolExecutor(1);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testRejectsWhenQueueIsFull() {
+        Bulkhead bulkhead = bulkhead(60000);
+        bulkhead.execute(this::call, () -> "Fallback", cancelled::incrementAndGet);
+        CompletableFuture<String> queued = bulkhead.execute(this::call, () -> "Fallback", cancelled::incrementAndGet);
+
+        CompletableFuture<String> rejected = bulkhead.execute(this::call, () -> "Fallback", cancelled::incrementAndGet);
+
+        assertThat(rejected.getNow(null)).isEqualTo("Fallback");
+        assertThat(queued.isDone()).isFalse();
+        assertThat(calls).hasSize(1);
+        assertThat(bulkhead.getMetrics().getQueuedCalls()).isEqualTo(1);
+        assertThat(bulkhead.getMetrics().getRejectedCalls()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFallsBackAfterMaxWait() throws Exception {
+        Bulkhead bulkhead = bulkhead(10);
+        bulkhead.execute(this::call, () -> "Fallback", cancelled::incrementAndGet);
+
+        CompletableFuture<String> queued = bulkhead.execute(this::call, () -> "Fallback", cancelled::incrementAndGet);
+
+        assertThat(queued.get(1, TimeUnit.SECONDS)).isEqualTo("Fallback");
+        assertThat(calls).hasSize(1);
+        assertThat(bulkhead.getMetrics().getQueuedCalls()).isZero();
+        assertThat(bulkhead.getMetrics().getRejectedCalls()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCancelWhileQueuedLeavesTheQueue() {
+        Bulkhead bulkhead = bulkhead(60000);
+        bulkhead.execute(this::call, () -> "Fallback", cancelled::incrementAndGet);
+        CompletableFuture<String> queued = bulkhead.execute(this::call, () -> "Fallback", cancelled::incrementAndGet);
+
+        queued.cancel(true);
+
+        assertThat(bulkhead.getMetrics().getQueuedCalls()).isZero();
+        calls.get(0).complete("World");
+        assertThat(calls).hasSize(1);
+        assertThat(bulkhead.getMetrics().getInFlightCalls()).isZero();
+        assertThat(bulkhead.getMetrics().getRejectedCalls()).isZero();
+        assertThat(cancelled.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCancelWhileQueuedGivesTheBreakerPermissionBack() {
+        NameServiceProperties.Breaker breakerConfig = new NameServiceProperties.Breaker();
+        breakerConfig.setWindowSize(1);
+        breakerConfig.setMinimumCalls(1);
+        breakerConfig.setWaitInOpen(0);
+        breakerConfig.setHalfOpenCalls(1);
+        CircuitBreaker breaker = new CircuitBreaker(breakerConfig);
+        breaker.tryAcquirePermission().onError(0);
+        Bulkhead bulkhead = bulkhead(60000);
+        bulkhead.execute(this::call, () -> "Fallback", cancelled::incrementAndGet);
+
+        // the single half-open probe waits in the queue, then its caller gives up
+        CircuitBreaker.Permit probe = breaker.tryAcquirePermission();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        bulkhead.execute(this::call, () -> null, probe::release).cancel(true);
+
+        assertThat(breaker.tryAcquirePermission()).isNotNull();
+    }
+
+    @Test
+    public void testHandsTheSlotToTheNextWaiter() {
+        Bulkhead bulkhead = bulkhead(60000);
+        CompletableFuture<String> first = bulkhead.execute(this::call, () -> "Fallback", cancelled::incrementAndGet);
+        CompletableFuture<String> queued = bulkhead.execute(this::call, () -> "Fallback", cancelled::incrementAndGet);
+
+        calls.get(0).complete("Hello");
+
+        assertThat(first.getNow(null)).isEqualTo("Hello");
+        assertThat(calls).hasSize(2);
+        assertThat(bulkhead.getMetrics().getInFlightCalls()).isEqualTo(1);
+        assertThat(bulkhead.getMetrics().getQueuedCalls()).isZero();
+
+        calls.get(1).complete("World");
+
+        assertThat(queued.getNow(null)).isEqualTo("World");
+        assertThat(bulkhead.getMetrics().getInFlightCalls()).isZero();
+    }
+
+    /**
+     * One call in flight and one more in the queue.
+     */
+    private Bulkhead bulkhead(long maxWait) {
+        NameServiceProperties.Bulkhead config = new NameServiceProperties.Bulkhead();
+        config.setMaxConcurrentCalls(1);
+        config.setMaxQueue(1);
+        config.setMaxWait(maxWait);
+        return new Bulkhead(config, ConcurrencyLimit.fixed(1), scheduler);
+    }
+
+    private CompletableFuture<String> call() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        calls.add(call);
+        return call;
+    }
+}
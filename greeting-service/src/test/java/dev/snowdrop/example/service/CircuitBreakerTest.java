@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.snowdrop.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ */
+public class CircuitBreakerTest {
+
+    private long now;
+
+    private NameServiceProperties.Breaker config;
+
+    private CircuitBreaker circuitBreaker;
+
+    @Before
+    public void setup() {
+        config = new NameServiceProperties.Breaker();
+        config.setWindowSize(10);
+        config.setMinimumCalls(4);
+        config.setHalfOpenCalls(2);
+        circuitBreaker = new CircuitBreaker(config, () -> now);
+    }
+
+    @Test
+    public void testOpensOnFailureRate() {
+        recordCalls(2, false);
+        recordCalls(1, true);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        recordCalls(1, true);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.tryAcquirePermission()).isNull();
+        assertThat(circuitBreaker.getMetrics().getNotPermittedCalls()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOpensOnSlowCallRate() {
+        config.setSlowCallRateThreshold(50);
+        config.setSlowCallDuration(100);
+        circuitBreaker = new CircuitBreaker(config, () -> now);
+
+        recordCalls(2, false);
+        circuitBreaker.tryAcquirePermission().onSuccess(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        circuitBreaker.tryAcquirePermission().onSuccess(TimeUnit.MILLISECONDS.toNanos(150));
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void testTimeBasedWindowForgetsOldCalls() {
+        config.setWindowType(NameServiceProperties.WindowType.TIME_BASED);
+        circuitBreaker = new CircuitBreaker(config, () -> now);
+
+        recordCalls(3, true);
+        now += TimeUnit.SECONDS.toNanos(11);
+        recordCalls(1, true);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.getMetrics().getBufferedCalls()).isEqualTo(1);
+
+        now += TimeUnit.SECONDS.toNanos(1);
+        recordCalls(3, true);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void testClosesAfterSuccessfulProbes() {
+        recordCalls(4, true);
+        now += TimeUnit.SECONDS.toNanos(5);
+
+        CircuitBreaker.Permit first = circuitBreaker.tryAcquirePermission();
+        CircuitBreaker.Permit second = circuitBreaker.tryAcquirePermission();
+        assertThat(circuitBreaker.tryAcquirePermission()).isNull();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        first.onSuccess(0);
+        second.onSuccess(0);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.getMetrics().getBufferedCalls()).isZero();
+    }
+
+    @Test
+    public void testReopensAfterFailedProbes() {
+        recordCalls(4, true);
+        now += TimeUnit.SECONDS.toNanos(5);
+
+        recordCalls(2, true);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.getMetrics().getState()).isEqualTo(CircuitBreakerState.OPEN);
+    }
+
+    @Test
+    public void testReleasedProbeCanBeTakenAgain() {
+        recordCalls(4, true);
+        now += TimeUnit.SECONDS.toNanos(5);
+
+        circuitBreaker.tryAcquirePermission();
+        CircuitBreaker.Permit unused = circuitBreaker.tryAcquirePermission();
+        assertThat(circuitBreaker.tryAcquirePermission()).isNull();
+
+        unused.release();
+        assertThat(circuitBreaker.tryAcquirePermission()).isNotNull();
+        assertThat(circuitBreaker.tryAcquirePermission()).isNull();
+    }
+
+    @Test
+    public void testPermitOfAnEarlierPhaseAddsNoProbe() {
+        CircuitBreaker.Permit closed = circuitBreaker.tryAcquirePermission();
+        recordCalls(4, true);
+        now += TimeUnit.SECONDS.toNanos(5);
+        CircuitBreaker.Permit earlierProbe = circuitBreaker.tryAcquirePermission();
+        now += TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitInHalfOpen());
+        assertThat(circuitBreaker.tryAcquirePermission()).isNull();
+        now += TimeUnit.SECONDS.toNanos(5);
+        assertThat(circuitBreaker.tryAcquirePermission()).isNotNull();
+
+        closed.release();
+        earlierProbe.release();
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(circuitBreaker.tryAcquirePermission()).isNotNull();
+        assertThat(circuitBreaker.tryAcquirePermission()).isNull();
+    }
+
+    @Test
+    public void testIgnoresCallsStartedBeforeTheTransition() {
+        CircuitBreaker.Permit closed = circuitBreaker.tryAcquirePermission();
+        recordCalls(4, true);
+        now += TimeUnit.SECONDS.toNanos(5);
+        circuitBreaker.tryAcquirePermission();
+
+        closed.onSuccess(0);
+        closed.onSuccess(0);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(circuitBreaker.getMetrics().getBufferedCalls()).isZero();
+    }
+
+    @Test
+    public void testReopensWhenProbesNeverReport() {
+        recordCalls(4, true);
+        now += TimeUnit.SECONDS.toNanos(5);
+        circuitBreaker.tryAcquirePermission();
+        circuitBreaker.tryAcquirePermission();
+
+        now += TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitInHalfOpen());
+        assertThat(circuitBreaker.tryAcquirePermission()).isNull();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        now += TimeUnit.SECONDS.toNanos(5);
+        assertThat(circuitBreaker.tryAcquirePermission()).isNotNull();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    private void recordCalls(int count, boolean failure) {
+        for (int i = 0; i < count; i++) {
+            CircuitBreaker.Permit permit = circuitBreaker.tryAcquirePermission();
+            assertThat(permit).isNotNull();
+            if (failure) {
+                permit.onError(0);
+            } else {
+                permit.onSuccess(0);
+            }
+        }
+    }
+}
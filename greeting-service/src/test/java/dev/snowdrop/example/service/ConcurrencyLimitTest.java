@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ */
+public class ConcurrencyLimitTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    public void testAimdGrowsWhileInUse() {
+        ConcurrencyLimit limit = create(NameServiceProperties.LimitAlgorithm.AIMD, 100);
+
+        limit.onSample(RTT, 10, false);
+        limit.onSample(RTT, 11, false);
+
+        assertThat(limit.getLimit()).isEqualTo(22);
+        assertThat(limit.getRtt()).isEqualTo(10.0);
+    }
+
+    @Test
+    public void testAimdIgnoresSuccessWhenMostlyIdle() {
+        ConcurrencyLimit limit = create(NameServiceProperties.LimitAlgorithm.AIMD, 100);
+
+        limit.onSample(RTT, 1, false);
+
+        assertThat(limit.getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    public void testAimdBacksOffOnDropAndTimeout() {
+        ConcurrencyLimit limit = create(NameServiceProperties.LimitAlgorithm.AIMD, 100);
+
+        limit.onSample(RTT, 20, true);
+        assertThat(limit.getLimit()).isEqualTo(18);
+
+        limit.onSample(TimeUnit.SECONDS.toNanos(2), 20, false);
+        assertThat(limit.getLimit()).isEqualTo(16);
+    }
+
+    @Test
+    public void testAimdStaysWithinBounds() {
+        ConcurrencyLimit limit = create(NameServiceProperties.LimitAlgorithm.AIMD, 21);
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(RTT, 21, false);
+        }
+        assertThat(limit.getLimit()).isEqualTo(21);
+
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(RTT, 21, true);
+        }
+        assertThat(limit.getLimit()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGradientGrowsWhileLatencyIsSteady() {
+        ConcurrencyLimit limit = create(NameServiceProperties.LimitAlgorithm.GRADIENT, 100);
+
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(RTT, limit.getLimit(), false);
+        }
+
+        assertThat(limit.getLimit()).isGreaterThan(20);
+        assertThat(limit.getRtt()).isEqualTo(10.0);
+        assertThat(limit.getBaselineRtt()).isEqualTo(10.0);
+    }
+
+    @Test
+    public void testGradientIgnoresSamplesWhenMostlyIdle() {
+        ConcurrencyLimit limit = create(NameServiceProperties.LimitAlgorithm.GRADIENT, 100);
+
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(RTT, 1, false);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    public void testGradientShrinksWhenLatencyRises() {
+        ConcurrencyLimit limit = create(NameServiceProperties.LimitAlgorithm.GRADIENT, 100);
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(RTT, 1, false);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(RTT * 10, limit.getLimit(), false);
+        }
+
+        assertThat(limit.getLimit()).isLessThan(20);
+        assertThat(limit.getBaselineRtt()).isLessThan(limit.getRtt());
+    }
+
+    @Test
+    public void testGradientShrinksOnDropDownToTheMinimum() {
+        ConcurrencyLimit limit = create(NameServiceProperties.LimitAlgorithm.GRADIENT, 100);
+
+        limit.onSample(RTT, 0, true);
+        assertThat(limit.getLimit()).isLessThan(20);
+
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(RTT, 0, true);
+        }
+        // sqrt(limit) is added back on every update, so it settles a little above the minimum
+        assertThat(limit.getLimit()).isBetween(1, 4);
+    }
+
+    @Test
+    public void testGradientStaysBelowTheMaximum() {
+        ConcurrencyLimit limit = create(NameServiceProperties.LimitAlgorithm.GRADIENT, 30);
+
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(RTT, limit.getLimit(), false);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(30);
+    }
+
+    @Test
+    public void testGradientTakesSamplesFromConcurrentCallers() throws Exception {
+        ConcurrencyLimit limit = create(NameServiceProperties.LimitAlgorithm.GRADIENT, 100);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> {
+                    for (int j = 0; j < 10000; j++) {
+                        limit.onSample(RTT, limit.getLimit(), false);
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        // the last samples may still be waiting for an update
+        limit.onSample(RTT, limit.getLimit(), false);
+
+        assertThat(limit.getLimit()).isEqualTo(100);
+        assertThat(limit.getBaselineRtt()).isEqualTo(10.0);
+    }
+
+    @Test
+    public void testFixedLimitNeverChanges() {
+        ConcurrencyLimit limit = create(NameServiceProperties.LimitAlgorithm.FIXED, 50);
+
+        limit.onSample(RTT, 50, true);
+
+        assertThat(limit.getLimit()).isEqualTo(50);
+        assertThat(limit.getRtt()).isEqualTo(10.0);
+    }
+
+    private static ConcurrencyLimit create(NameServiceProperties.LimitAlgorithm algorithm, int maxLimit) {
+        NameServiceProperties.Limiter config = new NameServiceProperties.Limiter();
+        config.setAlgorithm(algorithm);
+        return ConcurrencyLimit.create(config, maxLimit);
+    }
+}
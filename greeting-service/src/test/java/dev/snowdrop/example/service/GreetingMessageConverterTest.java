@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+/**
+ */
+public class GreetingMessageConverterTest {
+
+    private final GreetingMessageConverter converter = new GreetingMessageConverter();
+
+    @Test
+    public void testOnlyWritesGreetings() {
+        assertThat(converter.canWrite(GreetingController.Greeting.class, MediaType.APPLICATION_JSON)).isTrue();
+        assertThat(converter.canWrite(GreetingController.Greeting.class, null)).isTrue();
+        assertThat(converter.canWrite(GreetingController.Greeting.class, MediaType.TEXT_PLAIN)).isFalse();
+        assertThat(converter.canWrite(String.class, MediaType.APPLICATION_JSON)).isFalse();
+        assertThat(converter.canRead(GreetingController.Greeting.class, MediaType.APPLICATION_JSON)).isFalse();
+    }
+
+    @Test
+    public void testWritesUtf8Json() throws Exception {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+
+        converter.write(new GreetingController.Greeting("Hello, World!", "Zoë"), MediaType.ALL, message);
+
+        assertThat(message.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON_UTF8);
+        assertThat(message.getBodyAsString(StandardCharsets.UTF_8))
+                .isEqualTo("{\"content\":\"Hello, World!\",\"from\":\"Zoë\"}");
+    }
+
+    @Test
+    public void testKeepsTheNegotiatedJsonType() throws Exception {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+
+        converter.write(new GreetingController.Greeting("Hello, World!", null),
+                MediaType.parseMediaType("application/hal+json"), message);
+
+        assertThat(message.getHeaders().getContentType().toString()).isEqualTo("application/hal+json;charset=UTF-8");
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import okhttp3.OkHttpClient;
+import org.apache.coyote.http2.Http2Protocol;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.context.embedded.EmbeddedServletContainer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.OkHttp3ClientHttpRequestFactory;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.client.AsyncRestTemplate;
+
+/**
+ */
+public class H2cClientConfigurationTest {
+
+    private final NameClientConfiguration.H2cClientConfiguration configuration =
+            new NameClientConfiguration.H2cClientConfiguration();
+
+    private EmbeddedServletContainer container;
+
+    @After
+    public void tearDown() {
+        configuration.shutdown();
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+    @Test
+    public void testMultiplexesConcurrentCallsOverOneConnection() throws Exception {
+        TomcatEmbeddedServletContainerFactory factory = new TomcatEmbeddedServletContainerFactory(0);
+        factory.addConnectorCustomizers(connector -> connector.addUpgradeProtocol(new Http2Protocol()));
+        container = factory.getEmbeddedServletContainer(servletContext ->
+                servletContext.addServlet("name", new ProtocolServlet()).addMapping("/api/name"));
+        container.start();
+
+        OkHttpClient httpClient = configuration.nameH2cHttpClient(new NameServiceProperties());
+        AsyncRestTemplate restTemplate = new AsyncRestTemplate(new OkHttp3ClientHttpRequestFactory(httpClient));
+        String url = "http://localhost:" + container.getPort() + "/api/name";
+
+        List<ListenableFuture<ResponseEntity<String>>> calls = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            calls.add(restTemplate.getForEntity(url, String.class));
+        }
+
+        for (ListenableFuture<ResponseEntity<String>> call : calls) {
+            assertThat(call.get(5, TimeUnit.SECONDS).getBody()).isEqualTo("HTTP/2.0");
+        }
+        assertThat(httpClient.connectionPool().connectionCount()).isEqualTo(1);
+    }
+
+    /**
+     * Answers with the protocol of the request, slowly enough for the calls to overlap.
+     */
+    private static final class ProtocolServlet extends HttpServlet {
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.getWriter().print(request.getProtocol());
+        }
+    }
+}
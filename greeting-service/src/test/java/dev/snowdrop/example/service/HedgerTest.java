@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ */
+public class HedgerTest {
+
+    private final List<CompletableFuture<String>> calls = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch hedged = new CountDownLatch(1);
+
+    private ScheduledThreadPoolExecutor scheduler;
+
+    private Hedger hedger;
+
+    @Before
+    public void setup() {
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        NameServiceProperties.Hedge config = new NameServiceProperties.Hedge();
+        config.setDelay(1);
+        config.setBudget(0);
+        hedger = new Hedger(config, scheduler, () -> true);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testHedgeWinsTheRace() throws Exception {
+        CompletableFuture<String> name = hedger.execute(() -> call(calls.isEmpty() ? null : "World"));
+
+        assertThat(name.get(1, TimeUnit.SECONDS)).isEqualTo("World");
+        awaitTimers();
+        assertThat(calls).hasSize(2);
+        assertThat(calls.get(0).isCancelled()).isTrue();
+        assertThat(hedger.getHedgedCalls()).isEqualTo(1);
+        assertThat(hedger.getHedgeWins()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPrimaryWinsBeforeTheHedge() throws Exception {
+        NameServiceProperties.Hedge config = new NameServiceProperties.Hedge();
+        config.setDelay(60000);
+        hedger = new Hedger(config, scheduler, () -> true);
+
+        CompletableFuture<String> name = hedger.execute(() -> call(null));
+        calls.get(0).complete("World");
+
+        assertThat(name.get(1, TimeUnit.SECONDS)).isEqualTo("World");
+        awaitTimers();
+        assertThat(calls).hasSize(1);
+        assertThat(hedger.getHedgedCalls()).isZero();
+    }
+
+    @Test
+    public void testHedgesNoMoreThanTheBudget() throws Exception {
+        // no call earns anything with a budget of 0%, only the 10 hedges the budget starts with are available
+        for (int i = 0; i < 12; i++) {
+            hedger.execute(() -> call(null));
+        }
+        awaitTimers();
+
+        assertThat(hedger.getHedgedCalls()).isEqualTo(10);
+        assertThat(calls).hasSize(22);
+    }
+
+    @Test
+    public void testCancelStopsBothCalls() throws Exception {
+        CompletableFuture<String> name = hedger.execute(() -> call(null));
+        assertThat(hedged.await(1, TimeUnit.SECONDS)).isTrue();
+
+        name.cancel(true);
+        awaitTimers();
+
+        assertThat(calls).hasSize(2);
+        assertThat(calls.get(0).isCancelled()).isTrue();
+        assertThat(calls.get(1).isCancelled()).isTrue();
+    }
+
+    private CompletableFuture<String> call(String name) {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        calls.add(call);
+        if (calls.size() > 1) {
+            hedged.countDown();
+        }
+        if (name != null) {
+            call.complete(name);
+        }
+        return call;
+    }
+
+    private void awaitTimers() throws InterruptedException {
+        // the pending hedge timers still run after a shutdown, and a started hedge is joined on the timer thread
+        scheduler.shutdown();
+        assertThat(scheduler.awaitTermination(1, TimeUnit.SECONDS)).isTrue();
+    }
+}
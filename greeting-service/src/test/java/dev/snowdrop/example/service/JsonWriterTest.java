@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+/**
+ */
+public class JsonWriterTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testWritesGreetingLikeJackson() throws Exception {
+        GreetingController.Greeting greeting = new GreetingController.Greeting("Hello, World from \"me\"!", "me");
+
+        assertThat(mapper.readTree(greeting.toJson().toByteArray()))
+                .isEqualTo(mapper.readTree(mapper.writeValueAsBytes(greeting)));
+    }
+
+    @Test
+    public void testWritesCircuitBreakerStateLikeJackson() throws Exception {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(new NameServiceProperties.Breaker());
+        circuitBreaker.tryAcquirePermission().onError(0);
+        CircuitBreakerState state = circuitBreaker.getMetrics()
+                .withBulkhead(new CircuitBreakerState.BulkheadState(100, 50, 3, 1, 7))
+                .withEndpoints(Arrays.asList(
+                        new CircuitBreakerState.EndpointState("http://a", CircuitBreakerState.CLOSED, 2, 0, 1.5f, 0, 0),
+                        new CircuitBreakerState.EndpointState("http://b", CircuitBreakerState.OPEN, 0, 5, 0, 1, 4200)));
+
+        assertThat(mapper.readTree(state.toJson())).isEqualTo(mapper.readTree(mapper.writeValueAsBytes(state)));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ */
+public class MicroBatcherTest {
+
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    private final List<String> delays = new CopyOnWriteArrayList<>();
+
+    private final List<CompletableFuture<String[]>> responses = new CopyOnWriteArrayList<>();
+
+    private ScheduledThreadPoolExecutor scheduler;
+
+    @Before
+    public void setup() {
+        scheduler = new ScheduledThreadPoolExecutor(1);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testDispatchesAfterTheWindow() throws Exception {
+        MicroBatcher batcher = batcher(10, 50);
+
+        CompletableFuture<String> alice = batcher.submit("Alice", null);
+        CompletableFuture<String> bob = batcher.submit("Bob", null);
+        awaitBatches(1);
+        responses.get(0).complete(new String[] { "World", "Universe" });
+
+        assertThat(batches.get(0)).containsExactly("Alice", "Bob");
+        assertThat(alice.get(1, TimeUnit.SECONDS)).isEqualTo("World");
+        assertThat(bob.get(1, TimeUnit.SECONDS)).isEqualTo("Universe");
+    }
+
+    @Test
+    public void testDispatchesAFullBatchRightAway() throws Exception {
+        MicroBatcher batcher = batcher(60000, 3);
+
+        List<CompletableFuture<String>> names = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            names.add(batcher.submit("caller " + i, null));
+        }
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).containsExactly("caller 0", "caller 1", "caller 2");
+        responses.get(0).complete(new String[] { "a", "b", "c" });
+        assertThat(names.get(2).get(1, TimeUnit.SECONDS)).isEqualTo("c");
+        assertThat(names.get(3).isDone()).isFalse();
+    }
+
+    @Test
+    public void testSendsIdenticalCallersOnce() throws Exception {
+        MicroBatcher batcher = batcher(60000, 3);
+
+        CompletableFuture<String> first = batcher.submit("Alice", null);
+        CompletableFuture<String> second = batcher.submit("Bob", null);
+        CompletableFuture<String> third = batcher.submit("Alice", null);
+        responses.get(0).complete(new String[] { "World", "Universe" });
+
+        assertThat(batches.get(0)).containsExactly("Alice", "Bob");
+        assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("World");
+        assertThat(second.get(1, TimeUnit.SECONDS)).isEqualTo("Universe");
+        assertThat(third.get(1, TimeUnit.SECONDS)).isEqualTo("World");
+    }
+
+    @Test
+    public void testGroupsByDelay() throws Exception {
+        MicroBatcher batcher = batcher(10, 50);
+
+        batcher.submit("Alice", null);
+        batcher.submit("Bob", "100");
+        awaitBatches(2);
+
+        assertThat(delays).containsOnly(null, "100");
+        assertThat(batches).containsOnly(singletonList("Alice"), singletonList("Bob"));
+    }
+
+    @Test
+    public void testFallsBackWhenTheNameServiceIsUnavailable() throws Exception {
+        MicroBatcher batcher = batcher(60000, 2);
+
+        CompletableFuture<String> alice = batcher.submit("Alice", null);
+        CompletableFuture<String> bob = batcher.submit("Bob", null);
+        responses.get(0).complete(null);
+
+        assertThat(alice.get(1, TimeUnit.SECONDS)).isNull();
+        assertThat(bob.get(1, TimeUnit.SECONDS)).isNull();
+    }
+
+    @Test
+    public void testFailsAllCallersWhenTheBatchFails() throws Exception {
+        MicroBatcher batcher = batcher(60000, 2);
+
+        CompletableFuture<String> alice = batcher.submit("Alice", null);
+        CompletableFuture<String> bob = batcher.submit("Bob", null);
+        responses.get(0).completeExceptionally(new IllegalStateException("503"));
+
+        assertThat(alice.isCompletedExceptionally()).isTrue();
+        assertThat(bob.isCompletedExceptionally()).isTrue();
+    }
+
+    private MicroBatcher batcher(long window, int maxSize) {
+        NameServiceProperties.Batch config = new NameServiceProperties.Batch();
+        config.setEnabled(true);
+        config.setWindow(window);
+        config.setMaxSize(maxSize);
+        return new MicroBatcher(config, scheduler, (callers, delay) -> {
+            CompletableFuture<String[]> response = new CompletableFuture<>();
+            batches.add(callers);
+            delays.add(delay);
+            responses.add(response);
+            return response;
+        });
+    }
+
+    private void awaitBatches(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (responses.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(responses).hasSize(count);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ */
+public class NameBalancerTest {
+
+    private ScheduledExecutorService scheduler;
+
+    private NameServiceProperties properties;
+
+    @Before
+    public void setup() {
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        properties = new NameServiceProperties();
+        properties.getBalancer().setEndpoints(Arrays.asList("http://a", "http://b", "http://c", "http://d"));
+        properties.getBalancer().setConsecutiveErrors(2);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testEjectsAfterConsecutiveErrors() {
+        NameBalancer balancer = new NameBalancer(properties, scheduler);
+        NameBalancer.Endpoint failing = balancer.getEndpoints().get(0);
+
+        fail(failing, 2);
+
+        assertThat(balancer.getEjectedEndpoints()).isEqualTo(1);
+        assertThat(failing.getState().getState()).isEqualTo(CircuitBreakerState.OPEN);
+        for (int i = 0; i < 100; i++) {
+            assertThat(balancer.choose()).isNotSameAs(failing);
+        }
+    }
+
+    @Test
+    public void testSuccessResetsConsecutiveErrors() {
+        NameBalancer balancer = new NameBalancer(properties, scheduler);
+        NameBalancer.Endpoint endpoint = balancer.getEndpoints().get(0);
+
+        fail(endpoint, 1);
+        endpoint.onStart();
+        endpoint.onSuccess(1_000_000);
+        fail(endpoint, 1);
+
+        assertThat(balancer.getEjectedEndpoints()).isEqualTo(0);
+    }
+
+    @Test
+    public void testEjectsAtMostMaxEjectionPercent() {
+        NameBalancer balancer = new NameBalancer(properties, scheduler);
+
+        balancer.getEndpoints().forEach(endpoint -> fail(endpoint, 2));
+
+        assertThat(balancer.getEjectedEndpoints()).isEqualTo(2);
+        assertThat(balancer.getTotalEjections()).isEqualTo(2);
+    }
+
+    @Test
+    public void testPrefersLeastOutstanding() {
+        properties.getBalancer().setStrategy(NameServiceProperties.BalancingStrategy.LEAST_OUTSTANDING);
+        NameBalancer balancer = new NameBalancer(properties, scheduler);
+        balancer.getEndpoints().stream().skip(1).forEach(NameBalancer.Endpoint::onStart);
+
+        assertThat(balancer.choose()).isSameAs(balancer.getEndpoints().get(0));
+    }
+
+    private static void fail(NameBalancer.Endpoint endpoint, int times) {
+        for (int i = 0; i < times; i++) {
+            endpoint.onStart();
+            endpoint.onError();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ */
+public class NameCacheTest {
+
+    private final List<CompletableFuture<String>> calls = new CopyOnWriteArrayList<>();
+
+    private final Queue<String> names = new ConcurrentLinkedQueue<>();
+
+    @Test
+    public void testCachesTheName() throws Exception {
+        NameCache cache = cache(60000, 60000);
+        names.add("World");
+
+        assertThat(cache.get("Alice", null).get(1, TimeUnit.SECONDS)).isEqualTo("World");
+        assertThat(cache.get("Alice", null).get(1, TimeUnit.SECONDS)).isEqualTo("World");
+
+        assertThat(calls).hasSize(1);
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testKeysOnFrom() throws Exception {
+        NameCache cache = cache(60000, 60000);
+        names.add("World");
+        names.add("Universe");
+        names.add("Everyone");
+
+        assertThat(cache.get("Alice", null).get(1, TimeUnit.SECONDS)).isEqualTo("World");
+        assertThat(cache.get("Bob", null).get(1, TimeUnit.SECONDS)).isEqualTo("Universe");
+        assertThat(cache.get(null, null).get(1, TimeUnit.SECONDS)).isEqualTo("Everyone");
+
+        assertThat(calls).hasSize(3);
+    }
+
+    @Test
+    public void testDoesNotCacheFallbacks() throws Exception {
+        NameCache cache = cache(60000, 60000);
+
+        assertThat(cache.get("Alice", null).get(1, TimeUnit.SECONDS)).isNull();
+        names.add("World");
+        assertThat(cache.get("Alice", null).get(1, TimeUnit.SECONDS)).isEqualTo("World");
+
+        assertThat(calls).hasSize(2);
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneLoad() throws Exception {
+        NameCache cache = new NameCache(config(60000, 60000), (from, delay) -> {
+            CompletableFuture<String> call = new CompletableFuture<>();
+            calls.add(call);
+            return call;
+        });
+
+        CompletableFuture<String> first = cache.get("Alice", null);
+        CompletableFuture<String> second = cache.get("Alice", null);
+        calls.get(0).complete("World");
+
+        assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("World");
+        assertThat(second.get(1, TimeUnit.SECONDS)).isEqualTo("World");
+        assertThat(calls).hasSize(1);
+    }
+
+    @Test
+    public void testKeepsTheLastGoodNameWhenTheRefreshFails() throws Exception {
+        NameCache cache = cache(10, 60000);
+        names.add("World");
+        assertThat(cache.get("Alice", null).get(1, TimeUnit.SECONDS)).isEqualTo("World");
+
+        Thread.sleep(50);
+        // triggers a refresh in the background that gets no name, the stale name is served meanwhile
+        assertThat(cache.get("Alice", null).get(1, TimeUnit.SECONDS)).isEqualTo("World");
+        awaitCalls(2);
+        Thread.sleep(50);
+
+        assertThat(cache.get("Alice", null).get(1, TimeUnit.SECONDS)).isEqualTo("World");
+    }
+
+    @Test
+    public void testRefreshesInTheBackground() throws Exception {
+        NameCache cache = cache(10, 60000);
+        names.add("World");
+        names.add("Universe");
+        assertThat(cache.get("Alice", null).get(1, TimeUnit.SECONDS)).isEqualTo("World");
+
+        Thread.sleep(50);
+        assertThat(cache.get("Alice", null).get(1, TimeUnit.SECONDS)).isEqualTo("World");
+        awaitCalls(2);
+        Thread.sleep(50);
+
+        assertThat(cache.get("Alice", null).get(1, TimeUnit.SECONDS)).isEqualTo("Universe");
+    }
+
+    @Test
+    public void testExpiresEvenIfRefreshesFail() throws Exception {
+        NameCache cache = cache(10, 100);
+        names.add("World");
+        assertThat(cache.get("Alice", null).get(1, TimeUnit.SECONDS)).isEqualTo("World");
+
+        Thread.sleep(150);
+
+        assertThat(cache.get("Alice", null).get(1, TimeUnit.SECONDS)).isNull();
+    }
+
+    private NameCache cache(long refreshAfter, long expireAfter) {
+        // completes with the next queued name, or with null like a fallback when there is none left
+        return new NameCache(config(refreshAfter, expireAfter), (from, delay) -> {
+            CompletableFuture<String> call = CompletableFuture.completedFuture(names.poll());
+            calls.add(call);
+            return call;
+        });
+    }
+
+    private void awaitCalls(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (calls.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(calls).hasSize(count);
+    }
+
+    private static NameServiceProperties.Cache config(long refreshAfter, long expireAfter) {
+        NameServiceProperties.Cache config = new NameServiceProperties.Cache();
+        config.setEnabled(true);
+        config.setRefreshAfter(refreshAfter);
+        config.setExpireAfter(expireAfter);
+        return config;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.AsyncRestTemplate;
+
+/**
+ */
+public class NameCallMetricsTest {
+
+    private final NameCallMetrics callMetrics = new NameCallMetrics();
+
+    @Test
+    public void testPublishesCountsAndPercentilesByOutcome() {
+        for (int i = 1; i <= 100; i++) {
+            callMetrics.record(NameCallMetrics.Outcome.SUCCESS, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        callMetrics.record(NameCallMetrics.Outcome.UNAVAILABLE, TimeUnit.MILLISECONDS.toNanos(5));
+        callMetrics.recordRejected();
+
+        Map<String, Number> metrics = new HashMap<>();
+        callMetrics.metrics().forEach(metric -> metrics.put(metric.getName(), metric.getValue()));
+
+        assertThat(metrics.get("name.call.success.count")).isEqualTo(100L);
+        assertThat(metrics.get("name.call.success.p50").doubleValue()).isBetween(49.9, 50.1);
+        assertThat(metrics.get("name.call.success.p99").doubleValue()).isBetween(98.9, 99.1);
+        assertThat(metrics.get("name.call.unavailable.count")).isEqualTo(1L);
+        assertThat(metrics.get("name.call.timeout.count")).isEqualTo(0L);
+        assertThat(metrics.get("name.call.rejected.count")).isEqualTo(1L);
+    }
+
+    @Test
+    public void testWritesPrometheusSummaries() {
+        callMetrics.record(NameCallMetrics.Outcome.SUCCESS, TimeUnit.MILLISECONDS.toNanos(10));
+        callMetrics.record(NameCallMetrics.Outcome.SUCCESS, TimeUnit.MILLISECONDS.toNanos(30));
+        callMetrics.recordRejected();
+
+        StringBuilder out = new StringBuilder();
+        callMetrics.writePrometheus(out);
+
+        assertThat(out.toString())
+                .contains("# TYPE name_call_seconds summary\n")
+                .contains("name_call_seconds{outcome=\"success\",quantile=\"0.99\"} 0.030")
+                .contains("name_call_seconds_count{outcome=\"success\"} 2\n")
+                .contains("name_call_seconds_sum{outcome=\"success\"} 0.04\n")
+                .contains("name_call_seconds_count{outcome=\"error\"} 0\n")
+                .contains("# TYPE name_call_rejected_total counter\nname_call_rejected_total 1\n");
+    }
+
+    @Test
+    public void testClassifiesTimeouts() {
+        assertThat(NameCallMetrics.outcomeOf(new ExecutionException(new SocketTimeoutException())))
+                .isEqualTo(NameCallMetrics.Outcome.TIMEOUT);
+        assertThat(NameCallMetrics.outcomeOf(new IllegalStateException("connection refused")))
+                .isEqualTo(NameCallMetrics.Outcome.ERROR);
+    }
+
+    @Test
+    public void testPrometheusEndpointExportsTheOtherMetricsAsGauges() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        try {
+            NameService nameService = new NameService(new AsyncRestTemplate(), scheduler, new NameServiceProperties());
+            PublicMetrics publicMetrics = () -> Arrays.<Metric<?>>asList(new Metric<>("mem.free", 1024),
+                    new Metric<>("gauge.response.api-greeting", 2.5), new Metric<>("name.call.success.count", 0L));
+            PrometheusEndpoint endpoint = new PrometheusEndpoint(nameService, singletonList(publicMetrics));
+
+            ResponseEntity<String> response = endpoint.invoke();
+
+            assertThat(response.getHeaders().getContentType().toString()).startsWith("text/plain;version=0.0.4");
+            assertThat(response.getBody())
+                    .contains("name_call_seconds_count{outcome=\"success\"} 0\n")
+                    .contains("# TYPE mem_free gauge\nmem_free 1024.0\n")
+                    .contains("gauge_response_api_greeting 2.5\n")
+                    .doesNotContain("name_call_success_count");
+            assertThat(endpoint.isSensitive()).isTrue();
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
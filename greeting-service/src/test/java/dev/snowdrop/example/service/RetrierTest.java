@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.ConnectException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+/**
+ */
+public class RetrierTest {
+
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean breakerClosed = true;
+
+    private Retrier retrier;
+
+    @Before
+    public void setup() {
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        NameServiceProperties.Retry config = new NameServiceProperties.Retry();
+        config.setBaseDelay(1);
+        config.setMaxDelay(5);
+        retrier = new Retrier(config, scheduler, () -> breakerClosed);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testRetriesConnectionFailure() throws Exception {
+        CompletableFuture<String> name = retrier.execute(() -> attempts.incrementAndGet() < 3
+                ? failed(new ConnectException("Connection refused")) : CompletableFuture.completedFuture("World"));
+
+        assertThat(name.get(1, TimeUnit.SECONDS)).isEqualTo("World");
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(retrier.getRetries()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDoesNotRetryServiceUnavailable() {
+        CompletableFuture<String> name = retrier.execute(() -> {
+            attempts.incrementAndGet();
+            return failed(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+        });
+
+        assertThat(name.isCompletedExceptionally()).isTrue();
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testStopsWhenBreakerOpens() throws Exception {
+        CompletableFuture<String> name = retrier.execute(() -> {
+            attempts.incrementAndGet();
+            breakerClosed = false;
+            return failed(new ConnectException("Connection refused"));
+        });
+
+        assertThat(name.get(1, TimeUnit.SECONDS)).isNull();
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    private static CompletableFuture<String> failed(Throwable e) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+}
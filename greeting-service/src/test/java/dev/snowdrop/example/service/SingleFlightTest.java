@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ */
+public class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    private final List<CompletableFuture<String>> calls = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void testCoalescesConcurrentCallsWithTheSameKey() throws Exception {
+        CompletableFuture<String> first = singleFlight.execute("Alice", this::call);
+        CompletableFuture<String> second = singleFlight.execute("Alice", this::call);
+        assertThat(singleFlight.getInFlightCalls()).isEqualTo(1);
+
+        calls.get(0).complete("World");
+
+        assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("World");
+        assertThat(second.get(1, TimeUnit.SECONDS)).isEqualTo("World");
+        assertThat(calls).hasSize(1);
+        assertThat(singleFlight.getCoalescedCalls()).isEqualTo(1);
+        assertThat(singleFlight.getInFlightCalls()).isZero();
+    }
+
+    @Test
+    public void testKeepsDifferentKeysApart() throws Exception {
+        CompletableFuture<String> alice = singleFlight.execute("Alice", this::call);
+        CompletableFuture<String> bob = singleFlight.execute("Bob", this::call);
+
+        calls.get(0).complete("World");
+        calls.get(1).complete("Universe");
+
+        assertThat(alice.get(1, TimeUnit.SECONDS)).isEqualTo("World");
+        assertThat(bob.get(1, TimeUnit.SECONDS)).isEqualTo("Universe");
+        assertThat(singleFlight.getCoalescedCalls()).isZero();
+    }
+
+    @Test
+    public void testStartsAFreshCallOnceTheLastOneCompleted() throws Exception {
+        singleFlight.execute("Alice", this::call);
+        calls.get(0).complete("World");
+
+        CompletableFuture<String> later = singleFlight.execute("Alice", this::call);
+        calls.get(1).complete("Universe");
+
+        assertThat(later.get(1, TimeUnit.SECONDS)).isEqualTo("Universe");
+        assertThat(calls).hasSize(2);
+    }
+
+    @Test
+    public void testSharesFailures() throws Exception {
+        CompletableFuture<String> first = singleFlight.execute("Alice", this::call);
+        CompletableFuture<String> second = singleFlight.execute("Alice", this::call);
+
+        calls.get(0).completeExceptionally(new IllegalStateException("503"));
+
+        assertFailed(first, IllegalStateException.class);
+        assertFailed(second, IllegalStateException.class);
+        assertThat(singleFlight.getInFlightCalls()).isZero();
+    }
+
+    @Test
+    public void testReleasesTheKeyWhenTheCallThrows() throws Exception {
+        CompletableFuture<String> failed = singleFlight.execute("Alice", () -> {
+            throw new IllegalArgumentException("no client");
+        });
+
+        assertFailed(failed, IllegalArgumentException.class);
+        assertThat(singleFlight.getInFlightCalls()).isZero();
+        CompletableFuture<String> retried = singleFlight.execute("Alice", this::call);
+        calls.get(0).complete("World");
+        assertThat(retried.get(1, TimeUnit.SECONDS)).isEqualTo("World");
+    }
+
+    private CompletableFuture<String> call() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        calls.add(call);
+        return call;
+    }
+
+    private static void assertFailed(CompletableFuture<String> future, Class<? extends Throwable> cause)
+            throws Exception {
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Expected the call to fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(cause);
+        }
+    }
+}
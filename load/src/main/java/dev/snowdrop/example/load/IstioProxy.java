@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.load;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the Envoy sidecar in front of the name service.
+ * <p>
+ * It applies the connection pool limits of a {@link Scenario}: at most {@code maxConnections} requests are forwarded
+ * at the same time, at most {@code maxPendingRequests} wait for one of them, and any further request is answered
+ * right away with the 503 Envoy sends on overflow. The delay fault is applied before the limits, like Envoy's fault
+ * filter does. Outlier detection is not emulated: with a single name service instance there is nothing to fail over to.
+ */
+final class IstioProxy implements Closeable {
+
+    private static final byte[] OVERFLOW = "upstream connect error or disconnect/reset before headers. reset reason: overflow"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] UPSTREAM_ERROR = "upstream connect error or disconnect/reset before headers"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final String upstream;
+
+    private final Scenario scenario;
+
+    private final Semaphore connections;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final LongAdder overflows = new LongAdder();
+
+    private final ExecutorService threads;
+
+    private final HttpServer server;
+
+    IstioProxy(String upstream, Scenario scenario) throws IOException {
+        this.upstream = upstream;
+        this.scenario = scenario;
+        this.connections = new Semaphore(scenario.maxConnections, true);
+        this.threads = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "istio-proxy");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(threads);
+        server.start();
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    long getOverflows() {
+        return overflows.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        threads.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (scenario.faultPercent > 0 && ThreadLocalRandom.current().nextInt(100) < scenario.faultPercent) {
+                Thread.sleep(scenario.faultDelay);
+            }
+            if (!admit()) {
+                overflows.increment();
+                exchange.getResponseHeaders().set("x-envoy-overloaded", "true");
+                respond(exchange, 503, OVERFLOW);
+                return;
+            }
+            try {
+                forward(exchange);
+            } finally {
+                connections.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean admit() throws InterruptedException {
+        if (connections.tryAcquire()) {
+            return true;
+        }
+        if (pending.incrementAndGet() > scenario.maxPendingRequests) {
+            pending.decrementAndGet();
+            return false;
+        }
+        try {
+            connections.acquire();
+            return true;
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    private void forward(HttpExchange exchange) throws IOException {
+        HttpURLConnection connection;
+        int status;
+        byte[] body;
+        try {
+            connection = (HttpURLConnection) new URL(upstream + exchange.getRequestURI()).openConnection();
+            connection.setRequestMethod(exchange.getRequestMethod());
+            if (scenario.maxRequestsPerConnection == 1) {
+                connection.setRequestProperty("Connection", "close");
+            }
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType != null) {
+                connection.setRequestProperty("Content-Type", contentType);
+                connection.setDoOutput(true);
+                try (OutputStream out = connection.getOutputStream()) {
+                    copy(exchange.getRequestBody(), out);
+                }
+            }
+            status = connection.getResponseCode();
+            body = readAll(status >= 400 ? connection.getErrorStream() : connection.getInputStream());
+        } catch (IOException e) {
+            respond(exchange, 503, UPSTREAM_ERROR);
+            return;
+        }
+        String contentType = connection.getContentType();
+        if (contentType != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+        respond(exchange, status, body);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        if (in == null) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream input = in) {
+            copy(input, out);
+        }
+        return out.toByteArray();
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+}
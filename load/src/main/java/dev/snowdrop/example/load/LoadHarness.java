@@ -0,0 +1,204 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import dev.snowdrop.example.common.OutcomeStatistics;
+import dev.snowdrop.example.service.GreetingController;
+import dev.snowdrop.example.service.NameController;
+import org.springframework.boot.Banner;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Runs the example on a laptop: for each {@link Scenario} it starts the name service, an {@link IstioProxy} in front
+ * of it and the greeting service in this JVM on random ports, puts them under open-model load and prints throughput,
+ * fallback ratio and latency percentiles.
+ * <p>
+ * Usage: {@code java -jar load/target/load.jar [--rate=100] [--duration=30] [--warmup=5] [--callers=10]
+ * [--output=target/load] [--stats-port=8090] [SCENARIO...]}. Without scenarios, all of them run. System properties
+ * such as {@code -Dname.cache.enabled=true} or {@code -Ddelay.async=true} configure the services as usual. With
+ * {@code --stats-port} the run being generated can be watched live, see {@link StatisticsServer}.
+ * <p>
+ * {@code java -jar load/target/load.jar startup ...} measures the startup time of the greeting service instead,
+ * see {@link StartupProbe}.
+ */
+public final class LoadHarness {
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "startup".equals(args[0])) {
+            StartupProbe.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("rate", "100");
+        options.put("duration", "30");
+        options.put("warmup", "5");
+        options.put("callers", "10");
+        options.put("output", "target/load");
+        options.put("stats-port", "");
+        List<Scenario> scenarios = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                String name = arg.substring(2, arg.indexOf('='));
+                if (!options.containsKey(name)) {
+                    throw new IllegalArgumentException(
+                            "Unknown option " + arg + ", expected one of " + options.keySet());
+                }
+                options.put(name, arg.substring(arg.indexOf('=') + 1));
+            } else {
+                scenarios.add(Scenario.valueOf(arg.toUpperCase(Locale.ROOT).replace('-', '_')));
+            }
+        }
+        if (scenarios.isEmpty()) {
+            scenarios.addAll(Arrays.asList(Scenario.values()));
+        }
+        double rate = Double.parseDouble(options.get("rate"));
+        int duration = Integer.parseInt(options.get("duration"));
+        int warmup = Integer.parseInt(options.get("warmup"));
+        int callers = Integer.parseInt(options.get("callers"));
+        File output = new File(options.get("output"));
+        if (!output.isDirectory() && !output.mkdirs()) {
+            throw new IOException("Cannot create " + output);
+        }
+
+        String statsPort = options.get("stats-port");
+        StatisticsServer statisticsServer =
+                statsPort.isEmpty() ? null : new StatisticsServer(Integer.parseInt(statsPort));
+        if (statisticsServer != null) {
+            System.out.printf("Live statistics on http://localhost:%d/stats%n", statisticsServer.getPort());
+        }
+
+        Map<Scenario, LoadResult> results = new LinkedHashMap<>();
+        for (Scenario scenario : scenarios) {
+            System.out.printf("Running %s at %.0f req/s for %d s%n", scenario, rate, duration);
+            LoadResult result = run(scenario, rate, duration, warmup, callers, statisticsServer);
+            results.put(scenario, result);
+            File distribution = new File(output, scenario.name().toLowerCase(Locale.ROOT) + ".hgrm");
+            try (PrintStream out = new PrintStream(distribution, "UTF-8")) {
+                result.printDistribution(out);
+            }
+        }
+
+        System.out.println();
+        LoadResult.printHeader(System.out);
+        results.forEach((scenario, result) -> result.print(System.out, scenario.name()));
+        System.out.println("Latency distributions written to " + output);
+        // the embedded containers leave non-daemon threads behind
+        System.exit(0);
+    }
+
+    private static LoadResult run(Scenario scenario, double rate, int duration, int warmup, int callers,
+            StatisticsServer statisticsServer) throws Exception {
+        try (ConfigurableApplicationContext name = start(NameApplication.class, NameController.class);
+                IstioProxy proxy = new IstioProxy("http://localhost:" + port(name), scenario);
+                ConfigurableApplicationContext greeting = start(GreetingApplication.class, GreetingController.class,
+                        "name.host=http://localhost:" + proxy.getPort());
+                OpenLoadGenerator generator = new OpenLoadGenerator(10000)) {
+            String greetingUrl = "http://localhost:" + port(greeting) + "/api/greeting";
+            if (warmup > 0) {
+                generator.run(greetingUrl, scenario.delay, callers, rate, warmup, statistics(statisticsServer));
+            }
+            LoadResult result =
+                    generator.run(greetingUrl, scenario.delay, callers, rate, duration, statistics(statisticsServer));
+            System.out.printf("  %d requests answered with 503 by the proxy%n", proxy.getOverflows());
+            return result;
+        }
+    }
+
+    private static OutcomeStatistics statistics(StatisticsServer statisticsServer) {
+        OutcomeStatistics statistics = new OutcomeStatistics(60);
+        if (statisticsServer != null) {
+            statisticsServer.publish(statistics);
+        }
+        return statistics;
+    }
+
+    /**
+     * @param service any class of the service to start, the classes of the other service are left out of the scan
+     */
+    private static ConfigurableApplicationContext start(Class<?> application, Class<?> service,
+            String... properties) {
+        return new SpringApplicationBuilder(application)
+                .initializers(context -> context.getBeanFactory()
+                        .registerSingleton("otherServiceExcludeFilter", new OtherServiceExcludeFilter(service)))
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .properties("server.port=0", "spring.jmx.enabled=false", "logging.level.root=WARN",
+                        "endpoints.metrics.sensitive=false")
+                .properties(properties)
+                .run();
+    }
+
+    private static int port(ConfigurableApplicationContext context) {
+        return ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+    }
+
+    /**
+     * The name service. Both services use the same packages, see {@link OtherServiceExcludeFilter}.
+     */
+    @SpringBootApplication(scanBasePackageClasses = NameController.class)
+    static class NameApplication {
+    }
+
+    /**
+     * The greeting service. Both services use the same packages, see {@link OtherServiceExcludeFilter}.
+     */
+    @SpringBootApplication(scanBasePackageClasses = GreetingController.class)
+    static class GreetingApplication {
+    }
+
+    /**
+     * Keeps the component scan to the jar, or classes directory, of one service.
+     */
+    static final class OtherServiceExcludeFilter extends TypeExcludeFilter {
+
+        private final String location;
+
+        OtherServiceExcludeFilter(Class<?> service) {
+            this.location = location(service);
+        }
+
+        @Override
+        public boolean match(MetadataReader reader, MetadataReaderFactory factory) {
+            String type = reader.getClassMetadata().getClassName();
+            return !location.equals(location(ClassUtils.resolveClassName(type, getClass().getClassLoader())));
+        }
+
+        private static String location(Class<?> type) {
+            return type.getProtectionDomain().getCodeSource().getLocation().toString();
+        }
+    }
+}
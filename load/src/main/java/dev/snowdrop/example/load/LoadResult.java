@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.load;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Outcome of one {@link OpenLoadGenerator} run. Latencies are recorded in microseconds.
+ */
+final class LoadResult {
+
+    final int sent;
+
+    final long passed;
+
+    final long fallback;
+
+    final long failed;
+
+    final long elapsedNanos;
+
+    final Histogram latency;
+
+    LoadResult(int sent, long passed, long fallback, long failed, long elapsedNanos, Histogram latency) {
+        this.sent = sent;
+        this.passed = passed;
+        this.fallback = fallback;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+        this.latency = latency;
+    }
+
+    long getCompleted() {
+        return passed + fallback + failed;
+    }
+
+    double getThroughput() {
+        return getCompleted() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    double getFallbackRatio() {
+        long answered = passed + fallback;
+        return answered == 0 ? 0 : (double) fallback / answered;
+    }
+
+    static void printHeader(PrintStream out) {
+        out.printf("%-22s %8s %10s %9s %8s %9s %9s %9s %9s %9s%n", "scenario", "sent", "req/s", "fallback", "errors",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+    }
+
+    void print(PrintStream out, String scenario) {
+        out.printf("%-22s %8d %10.1f %8.1f%% %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n", scenario, sent, getThroughput(),
+                getFallbackRatio() * 100, failed + (sent - getCompleted()), millis(latency.getValueAtPercentile(50)),
+                millis(latency.getValueAtPercentile(90)), millis(latency.getValueAtPercentile(99)),
+                millis(latency.getValueAtPercentile(99.9)), millis(latency.getMaxValue()));
+    }
+
+    /**
+     * Writes the full latency distribution in HdrHistogram's percentile format, in milliseconds.
+     */
+    void printDistribution(PrintStream out) {
+        latency.outputPercentileDistribution(out, 1000.0);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
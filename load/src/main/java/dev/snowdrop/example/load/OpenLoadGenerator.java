@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.load;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import dev.snowdrop.example.common.OutcomeStatistics;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Open-model load generator: requests are sent at a fixed arrival rate whether or not the previous ones completed.
+ * <p>
+ * Latency is measured from the time a request was due to be sent, not from the time it actually was, so a stalled
+ * service shows up in the percentiles instead of silently lowering the request rate.
+ */
+final class OpenLoadGenerator implements Closeable {
+
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toMicros(1);
+
+    private static final int DRAIN_SECONDS = 30;
+
+    private final CloseableHttpAsyncClient client;
+
+    OpenLoadGenerator(int maxConnections) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(5000)
+                .setSocketTimeout(DRAIN_SECONDS * 1000)
+                .build();
+        this.client = HttpAsyncClients.custom()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+        client.start();
+    }
+
+    /**
+     * Calls {@code /api/greeting} at {@code rate} requests per second for {@code seconds}, cycling through
+     * {@code callers} distinct {@code from} values, and waits for the outstanding requests.
+     *
+     * @param statistics records every response as it arrives, for the live view
+     */
+    LoadResult run(String greetingUrl, String delay, int callers, double rate, int seconds,
+            OutcomeStatistics statistics) throws InterruptedException {
+        int count = (int) Math.round(rate * seconds);
+        long interval = Math.round(TimeUnit.SECONDS.toNanos(1) / rate);
+        String[] uris = new String[callers];
+        for (int i = 0; i < callers; i++) {
+            uris[i] = greetingUrl + "?from=" + encode("caller-" + i) + (delay != null ? "&delay=" + encode(delay) : "");
+        }
+
+        Histogram latency = new ConcurrentHistogram(HIGHEST_LATENCY, 3);
+        CountDownLatch outstanding = new CountDownLatch(count);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long due = start + i * interval;
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            client.execute(new HttpGet(uris[i % callers]), new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                    OutcomeStatistics.Outcome outcome;
+                    try {
+                        String body = EntityUtils.toString(response.getEntity());
+                        if (response.getStatusLine().getStatusCode() != 200) {
+                            outcome = OutcomeStatistics.Outcome.ERROR;
+                        } else if (body.contains("Fallback")) {
+                            outcome = OutcomeStatistics.Outcome.FALLBACK;
+                        } else {
+                            outcome = OutcomeStatistics.Outcome.PASSED;
+                        }
+                    } catch (IOException e) {
+                        outcome = OutcomeStatistics.Outcome.ERROR;
+                    }
+                    record(due, outcome);
+                    outstanding.countDown();
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    record(due, OutcomeStatistics.Outcome.ERROR);
+                    outstanding.countDown();
+                }
+
+                @Override
+                public void cancelled() {
+                    record(due, OutcomeStatistics.Outcome.ERROR);
+                    outstanding.countDown();
+                }
+
+                private void record(long due, OutcomeStatistics.Outcome outcome) {
+                    long nanos = System.nanoTime() - due;
+                    latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_LATENCY));
+                    statistics.record(outcome, nanos);
+                }
+            });
+        }
+        outstanding.await(DRAIN_SECONDS, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+        return new LoadResult(count, statistics.getTotalCount(OutcomeStatistics.Outcome.PASSED),
+                statistics.getTotalCount(OutcomeStatistics.Outcome.FALLBACK),
+                statistics.getTotalCount(OutcomeStatistics.Outcome.ERROR), elapsed, latency);
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
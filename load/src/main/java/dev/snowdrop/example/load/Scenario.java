@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.load;
+
+/**
+ * Istio configurations of the example, reproduced by the {@link IstioProxy}.
+ */
+enum Scenario {
+
+    /**
+     * {@code istio/initial_destination_rule.yml}.
+     */
+    INITIAL(100, 10, 0, null, 0, 0),
+
+    /**
+     * {@code istio/restrictive_destination_rule.yml}.
+     */
+    RESTRICTIVE(1, 1, 1, null, 0, 0),
+
+    /**
+     * The restrictive rule with the "Simulate load" checkbox ticked.
+     */
+    RESTRICTIVE_WITH_LOAD(1, 1, 1, "150", 0, 0),
+
+    /**
+     * The restrictive rule with {@code istio/name_with_delay.yml} applied.
+     */
+    NAME_WITH_DELAY(1, 1, 1, null, 50, 1000);
+
+    /**
+     * {@code connectionPool.tcp.maxConnections}.
+     */
+    final int maxConnections;
+
+    /**
+     * {@code connectionPool.http.http1MaxPendingRequests}.
+     */
+    final int maxPendingRequests;
+
+    /**
+     * {@code connectionPool.http.maxRequestsPerConnection}, 0 for unlimited.
+     */
+    final int maxRequestsPerConnection;
+
+    /**
+     * {@code delay} parameter passed to the greeting service, {@code null} for none.
+     */
+    final String delay;
+
+    /**
+     * {@code fault.delay.percent}.
+     */
+    final int faultPercent;
+
+    /**
+     * {@code fault.delay.fixedDelay} in milliseconds.
+     */
+    final long faultDelay;
+
+    Scenario(int maxConnections, int maxPendingRequests, int maxRequestsPerConnection, String delay, int faultPercent,
+            long faultDelay) {
+        this.maxConnections = maxConnections;
+        this.maxPendingRequests = maxPendingRequests;
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+        this.delay = delay;
+        this.faultPercent = faultPercent;
+        this.faultDelay = faultDelay;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.load;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a freshly started greeting service takes to answer its first greeting with a name from the name
+ * service, i.e. how long a new replica leaves callers with the fallback.
+ * <p>
+ * The name service is started once, then the greeting service is started {@code runs} times, each time as a new JVM
+ * with the given Java options, and {@code /api/greeting} is polled every 10 ms from the moment the process is launched.
+ * The times are printed and appended to a CSV file under {@code label}, so runs with different options, e.g. the
+ * {@code fast-startup} profile and its class data sharing archive, can be compared over time.
+ * <p>
+ * Usage: {@code java -jar load/target/load.jar startup --greeting=<jar> --name=<jar> [--runs=5]
+ * [--java-options="..."] [--label=default] [--output=target/startup.csv]}.
+ */
+final class StartupProbe {
+
+    private static final long POLL_MILLIS = 10;
+
+    private static final long TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    private StartupProbe() {
+    }
+
+    static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("greeting", null);
+        options.put("name", null);
+        options.put("runs", "5");
+        options.put("java-options", "");
+        options.put("label", "default");
+        options.put("output", "target/startup.csv");
+        for (String arg : args) {
+            String name = arg.startsWith("--") && arg.contains("=") ? arg.substring(2, arg.indexOf('=')) : null;
+            if (name == null || !options.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected one of " + options.keySet());
+            }
+            options.put(name, arg.substring(arg.indexOf('=') + 1));
+        }
+        if (options.get("greeting") == null || options.get("name") == null) {
+            throw new IllegalArgumentException("Both --greeting and --name jars are required");
+        }
+        File greetingJar = new File(options.get("greeting"));
+        File nameJar = new File(options.get("name"));
+        int runs = Integer.parseInt(options.get("runs"));
+        List<String> javaOptions = options.get("java-options").trim().isEmpty()
+                ? Collections.emptyList() : Arrays.asList(options.get("java-options").trim().split("\\s+"));
+        File output = new File(options.get("output"));
+        File logs = new File(output.getAbsoluteFile().getParentFile(), "startup-logs");
+        if (!logs.isDirectory() && !logs.mkdirs()) {
+            throw new IOException("Cannot create " + logs);
+        }
+
+        int namePort = freePort();
+        Process name = start(nameJar, Collections.emptyList(), new File(logs, "name.log"), "-Dserver.port=" + namePort);
+        try {
+            awaitFirstResponse("http://localhost:" + namePort + "/api/name", null);
+
+            List<Long> times = new ArrayList<>();
+            for (int run = 1; run <= runs; run++) {
+                int port = freePort();
+                long start = System.nanoTime();
+                Process greeting = start(greetingJar, javaOptions, new File(logs, "greeting-" + run + ".log"),
+                        "-Dserver.port=" + port, "-Dname.host=http://localhost:" + namePort);
+                try {
+                    awaitFirstResponse("http://localhost:" + port + "/api/greeting", "Fallback");
+                    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    times.add(millis);
+                    System.out.printf("Run %d: first greeting after %d ms%n", run, millis);
+                } finally {
+                    stop(greeting);
+                }
+            }
+
+            Collections.sort(times);
+            long min = times.get(0);
+            long median = times.get(times.size() / 2);
+            long max = times.get(times.size() - 1);
+            System.out.printf("%s: min %d ms, median %d ms, max %d ms over %d runs%n", options.get("label"), min,
+                    median, max, runs);
+            boolean header = !output.exists();
+            try (PrintStream out = new PrintStream(new FileOutputStream(output, true), true, "UTF-8")) {
+                if (header) {
+                    out.println("time,label,runs,min_ms,median_ms,max_ms");
+                }
+                out.printf("%s,%s,%d,%d,%d,%d%n", Instant.now(), options.get("label"), runs, min, median, max);
+            }
+            System.out.println("Appended to " + output);
+        } finally {
+            stop(name);
+        }
+    }
+
+    private static Process start(File jar, List<String> javaOptions, File log, String... properties)
+            throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.addAll(javaOptions);
+        command.addAll(Arrays.asList(properties));
+        command.add("-jar");
+        command.add(jar.getAbsolutePath());
+        return new ProcessBuilder(command)
+                // relative paths in the options, such as the class data sharing archive, are relative to the jar
+                .directory(jar.getAbsoluteFile().getParentFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+    }
+
+    /**
+     * Polls the URL until it answers 200 with a body that doesn't contain {@code unwanted}.
+     */
+    private static void awaitFirstResponse(String url, String unwanted) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (System.nanoTime() - deadline < 0) {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+                connection.setConnectTimeout(100);
+                connection.setReadTimeout(5000);
+                if (connection.getResponseCode() == 200) {
+                    String body = read(connection.getInputStream());
+                    if (unwanted == null || !body.contains(unwanted)) {
+                        return;
+                    }
+                }
+                connection.disconnect();
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+        throw new IllegalStateException("No answer from " + url + " after " + TIMEOUT_MILLIS + " ms");
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream body = in) {
+            byte[] buffer = new byte[4096];
+            StringBuilder text = new StringBuilder();
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                text.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+            }
+            return text.toString();
+        }
+    }
+
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(10, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
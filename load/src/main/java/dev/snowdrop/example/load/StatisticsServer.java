@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.load;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.snowdrop.example.common.OutcomeStatistics;
+
+/**
+ * Serves the statistics of the load currently generated on {@code GET /stats[?window=seconds]}, so a run can be
+ * watched live, e.g. with {@code watch curl -s localhost:8090/stats?window=5}.
+ */
+final class StatisticsServer implements Closeable {
+
+    private final HttpServer server;
+
+    private volatile OutcomeStatistics statistics;
+
+    StatisticsServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/stats", this::handle);
+        server.start();
+    }
+
+    /**
+     * Serves these statistics from now on.
+     */
+    void publish(OutcomeStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        // HttpExchange is only AutoCloseable since Java 14
+        try {
+            OutcomeStatistics current = statistics;
+            if (current == null) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            String query = exchange.getRequestURI().getQuery();
+            OutcomeStatistics.Snapshot snapshot;
+            try {
+                snapshot = query != null && query.startsWith("window=")
+                        ? current.snapshot(Integer.parseInt(query.substring("window=".length())))
+                        : current.snapshot();
+            } catch (NumberFormatException e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            byte[] body = snapshot.toJson();
+            exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -20,19 +20,27 @@ import java.io.IOException;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+import javax.annotation.PreDestroy;
 import javax.servlet.Filter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.filter.CorsFilter;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
@@ -46,8 +54,34 @@ public class NameController {
 
     private static final String DEFAULT_NAME = "World";
 
-    private final List<SseEmitter> nameEmitters = new ArrayList<>();
+    private static final String NAME_FROM = DEFAULT_NAME + " from ";
 
+    private static final ResponseEntity<String> DEFAULT_RESPONSE = new ResponseEntity<>(DEFAULT_NAME, HttpStatus.OK);
+
+    private final NameEventBroadcaster events;
+
+    private final ScheduledExecutorService delayTimer;
+
+    /**
+     * @param events broadcaster of the {@code /name-sse} events
+     * @param asyncDelay whether delayed responses are completed from a shared timer instead of sleeping on the request
+     *        thread
+     * @param timerThreads number of timer threads used in async delay mode
+     */
+    public NameController(NameEventBroadcaster events, @Value("${delay.async:false}") boolean asyncDelay, @Value("${delay.timer-threads:1}") int timerThreads) {
+        this.events = events;
+        if (asyncDelay) {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(timerThreads, task -> {
+                Thread thread = new Thread(task, "name-delay-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.setRemoveOnCancelPolicy(true);
+            this.delayTimer = timer;
+        } else {
+            this.delayTimer = null;
+        }
+    }
 
     /**
      * Endpoint to get a name.
@@ -55,41 +89,67 @@ public class NameController {
      * @return Host name.
      */
     @RequestMapping("/api/name")
-    public ResponseEntity<String> getName(@RequestParam(name = "from", required = false) String from, @RequestParam(name = "delay", required = false) String delay) throws IOException {
-        final String fromSuffix = from != null ? " from " + from : "";
+    public ResponseEntity<String> getName(@RequestParam(name = "from", required = false) String from) {
+        // this is the hot path: the event is only built if somebody is listening, the log line only if INFO is on
+        if (events.hasSubscribers()) {
+            events.publish("GET /api/name at " + LocalTime.now() + (from != null ? " from " + from : ""));
+        }
+        if (from == null) {
+            LOG.info("Returning name '{}'", DEFAULT_NAME);
+            return DEFAULT_RESPONSE;
+        }
 
-        final String name = DEFAULT_NAME + fromSuffix;
-        LOG.info(String.format("Returning name '%s'", name));
+        final String name = NAME_FROM.concat(from);
+        LOG.info("Returning name '{}'", name);
+        return new ResponseEntity<>(name, HttpStatus.OK);
+    }
 
-        // add random processing time to have a better chance for concurrent calls if we asked for it
-        if (delay != null && !delay.isEmpty()) {
-            int processingDelay;
-            try {
-                processingDelay = Integer.parseInt(delay);
-            } catch (NumberFormatException e) {
-                processingDelay = 150;
-            }
-            
-            try {
-                final long round = Math.round((Math.random() * 200) + processingDelay);
-                Thread.sleep(round);
-                LOG.info(String.format("Delayed call %s ms", round));
-            } catch (InterruptedException e) {
-                throw new IOException(e);
-            }
+    /**
+     * Endpoint to get a name after a random processing time, to have a better chance for concurrent calls.
+     * <p>
+     * By default the request thread sleeps for the processing time. With {@code delay.async=true} the response is
+     * completed from a shared timer instead, so thousands of delayed requests can be pending on a handful of threads.
+     *
+     * @return Host name.
+     */
+    @RequestMapping(value = "/api/name", params = "delay")
+    public DeferredResult<ResponseEntity<String>> getDelayedName(@RequestParam(name = "from", required = false) String from, @RequestParam(name = "delay") String delay) throws IOException {
+        return delayed(delay, () -> getName(from));
+    }
+
+    /**
+     * Endpoint to get many names in one round trip.
+     *
+     * @param from callers to get a name for, may contain {@code null} for an anonymous caller
+     * @return Names, in the same order as the callers.
+     */
+    @RequestMapping(value = "/api/names", method = RequestMethod.POST)
+    public ResponseEntity<List<String>> getNames(@RequestBody List<String> from) {
+        final List<String> names = new ArrayList<>(from.size());
+        for (String caller : from) {
+            names.add(caller != null ? NAME_FROM.concat(caller) : DEFAULT_NAME);
         }
+        LOG.info("Returning {} names", names.size());
 
-        sendMessage("GET /api/name at " + LocalTime.now() + fromSuffix);
-        return new ResponseEntity<>(name, HttpStatus.OK);
+        if (events.hasSubscribers()) {
+            events.publish("POST /api/names at " + LocalTime.now() + " for " + names.size() + " callers");
+        }
+        return new ResponseEntity<>(names, HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint to get many names in one round trip, after a single random processing time.
+     *
+     * @see #getDelayedName(String, String)
+     */
+    @RequestMapping(value = "/api/names", method = RequestMethod.POST, params = "delay")
+    public DeferredResult<ResponseEntity<List<String>>> getDelayedNames(@RequestBody List<String> from, @RequestParam(name = "delay") String delay) throws IOException {
+        return delayed(delay, () -> getNames(from));
     }
-    
+
     @RequestMapping("/name-sse")
     public SseEmitter nameStateEmitter() {
-        SseEmitter emitter = new SseEmitter();
-        nameEmitters.add(emitter);
-        emitter.onCompletion(() -> nameEmitters.remove(emitter));
-
-        return emitter;
+        return events.subscribe();
     }
 
     @Bean
@@ -101,13 +161,42 @@ public class NameController {
         return new CorsFilter(request -> configuration);
     }
 
-    private void sendMessage(String message) {
-        nameEmitters.forEach(emitter -> {
+    @PreDestroy
+    public void shutdown() {
+        if (delayTimer != null) {
+            delayTimer.shutdownNow();
+        }
+    }
+
+    private <T> DeferredResult<T> delayed(String delay, Supplier<T> response) throws IOException {
+        final DeferredResult<T> result = new DeferredResult<>();
+        if (delay.isEmpty()) {
+            result.setResult(response.get());
+            return result;
+        }
+
+        int processingDelay;
+        try {
+            processingDelay = Integer.parseInt(delay);
+        } catch (NumberFormatException e) {
+            processingDelay = 150;
+        }
+        final long round = Math.round((Math.random() * 200) + processingDelay);
+
+        if (delayTimer == null) {
             try {
-                emitter.send(message, MediaType.TEXT_PLAIN);
-            } catch (IOException e) {
-                emitter.complete();
+                Thread.sleep(round);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
             }
-        });
+            LOG.info("Delayed call {} ms", round);
+            result.setResult(response.get());
+        } else {
+            delayTimer.schedule(() -> {
+                LOG.info("Delayed call {} ms", round);
+                result.setResult(response.get());
+            }, round, TimeUnit.MILLISECONDS);
+        }
+        return result;
     }
 }
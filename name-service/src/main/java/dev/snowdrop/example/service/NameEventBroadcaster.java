@@ -0,0 +1,251 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Fans the name service events out to the {@code /name-sse} subscribers.
+ * <p>
+ * Publishing only offers the event to a bounded queue. A dispatcher thread copies each event into the ring buffer of
+ * every subscriber, and a small pool of sender threads drains those buffers into the emitters. A subscriber that cannot
+ * keep up loses its oldest events instead of holding back the others, and events published while the dispatcher is
+ * behind are dropped.
+ */
+@Component
+public class NameEventBroadcaster implements PublicMetrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NameEventBroadcaster.class);
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final BlockingQueue<String> events;
+
+    private final LongAdder droppedEvents = new LongAdder();
+
+    private final ExecutorService dispatcher;
+
+    private final ExecutorService senders;
+
+    private final long emitterTimeout;
+
+    private final int bufferSize;
+
+    /**
+     * @param emitterTimeout milliseconds after which a subscription is completed, the client is expected to reconnect
+     * @param bufferSize number of events buffered per subscriber
+     * @param queueSize number of events waiting for the dispatcher
+     * @param senderThreads number of threads writing to the subscribers
+     */
+    public NameEventBroadcaster(@Value("${sse.timeout:300000}") long emitterTimeout,
+            @Value("${sse.buffer-size:64}") int bufferSize, @Value("${sse.queue-size:1024}") int queueSize,
+            @Value("${sse.sender-threads:2}") int senderThreads) {
+        this.emitterTimeout = emitterTimeout;
+        this.bufferSize = bufferSize;
+        this.events = new ArrayBlockingQueue<>(queueSize);
+        this.dispatcher = Executors.newSingleThreadExecutor(daemon("name-sse-dispatcher"));
+        this.senders = Executors.newFixedThreadPool(senderThreads, daemon("name-sse-sender"));
+        dispatcher.execute(this::dispatch);
+    }
+
+    /**
+     * Creates and registers a new subscription.
+     */
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(emitterTimeout));
+    }
+
+    /**
+     * Registers an emitter created by the caller, e.g. one that is not connected to a response.
+     */
+    SseEmitter subscribe(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter, bufferSize, droppedEvents);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> {
+            subscribers.remove(subscriber);
+            emitter.complete();
+        });
+        return emitter;
+    }
+
+    /**
+     * Queues an event for all subscribers, without waiting.
+     */
+    public void publish(String event) {
+        if (!events.offer(event)) {
+            droppedEvents.increment();
+        }
+    }
+
+    /**
+     * Whether anybody is subscribed, so callers can skip building events nobody would receive.
+     */
+    public boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * @return Events dropped so far, by the dispatcher or by the subscribers, including those that are gone.
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("name.sse.subscribers", getSubscriberCount()),
+                new Metric<>("name.sse.dropped", getDroppedEvents()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    private void dispatch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                String event = events.take();
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.offer(event);
+                    if (subscriber.draining.compareAndSet(false, true)) {
+                        drainLater(subscriber);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLater(Subscriber subscriber) {
+        try {
+            senders.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) {
+            subscriber.draining.set(false);
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        do {
+            String event;
+            while ((event = subscriber.poll()) != null) {
+                try {
+                    subscriber.emitter.send(event, MediaType.TEXT_PLAIN);
+                } catch (IOException | IllegalStateException e) {
+                    LOG.debug("Removing SSE subscriber: {}", e.getMessage());
+                    subscribers.remove(subscriber);
+                    subscriber.emitter.completeWithError(e);
+                    return;
+                }
+            }
+            subscriber.draining.set(false);
+            // an event may have been offered after the last poll but before the flag was cleared
+        } while (!subscriber.isEmpty() && subscriber.draining.compareAndSet(false, true));
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A subscription and its ring buffer, which overwrites the oldest event when full. The overwritten events are
+     * counted with those of the whole broadcaster, so the count doesn't go down when the subscriber leaves.
+     */
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private final String[] buffer;
+
+        private int head;
+
+        private int size;
+
+        private final LongAdder dropped;
+
+        Subscriber(SseEmitter emitter, int bufferSize, LongAdder dropped) {
+            this.emitter = emitter;
+            this.buffer = new String[bufferSize];
+            this.dropped = dropped;
+        }
+
+        synchronized void offer(String event) {
+            if (size == buffer.length) {
+                buffer[head] = null;
+                head = (head + 1) % buffer.length;
+                size--;
+                dropped.increment();
+            }
+            buffer[(head + size) % buffer.length] = event;
+            size++;
+        }
+
+        synchronized String poll() {
+            if (size == 0) {
+                return null;
+            }
+            String event = buffer[head];
+            buffer[head] = null;
+            head = (head + 1) % buffer.length;
+            size--;
+            return event;
+        }
+
+        synchronized boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import dev.snowdrop.example.common.VirtualThreadCustomizer;
+import org.apache.coyote.http2.Http2Protocol;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Optional Tomcat settings of the name service.
+ * <p>
+ * With {@code spring.threads.virtual.enabled=true}, Tomcat runs every request on its own virtual thread instead of its
+ * pool of 200 platform threads, so a request sleeping through its processing delay no longer holds an OS thread, only a
+ * small stack on the heap. This needs Java 24, see {@link VirtualThreadCustomizer}; on older runtimes the platform
+ * pool is kept.
+ * <p>
+ * With {@code server.http2.enabled=true}, Tomcat also accepts HTTP/2 over cleartext (h2c) on its HTTP port, either
+ * through an upgrade or with prior knowledge, so the greeting service can multiplex its calls over a few connections.
+ */
+@Configuration
+public class NameServerConfiguration {
+
+    @Bean
+    @ConditionalOnProperty("spring.threads.virtual.enabled")
+    public VirtualThreadCustomizer virtualThreadCustomizer() {
+        return new VirtualThreadCustomizer();
+    }
+
+    @Bean
+    @ConditionalOnProperty("server.http2.enabled")
+    public EmbeddedServletContainerCustomizer http2Customizer() {
+        return container -> {
+            if (container instanceof TomcatEmbeddedServletContainerFactory) {
+                ((TomcatEmbeddedServletContainerFactory) container)
+                        .addConnectorCustomizers(connector -> connector.addUpgradeProtocol(new Http2Protocol()));
+            }
+        };
+    }
+}
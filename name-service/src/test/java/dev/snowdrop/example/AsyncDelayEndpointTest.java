@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.snowdrop.example;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import io.restassured.RestAssured;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "delay.async=true")
+public class AsyncDelayEndpointTest {
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Before
+    public void setup() {
+        RestAssured.baseURI = String.format("http://localhost:%s/api", port);
+    }
+
+    @Test
+    public void testGetAsyncDelayedName() {
+        RestAssured.given().param("from", "test").param("delay", 0)
+                .when().get("name").then().assertThat().statusCode(200).body(equalTo("World from test"));
+    }
+}
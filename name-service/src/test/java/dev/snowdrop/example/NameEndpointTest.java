@@ -15,9 +15,11 @@
  */
 package dev.snowdrop.example;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.core.IsEqual.equalTo;
 
 import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -43,4 +45,17 @@ public class NameEndpointTest {
     public void testGetName() {
         RestAssured.when().get("name").then().assertThat().statusCode(200).body(equalTo("World"));
     }
+
+    @Test
+    public void testGetDelayedName() {
+        RestAssured.given().param("from", "test").param("delay", 0)
+                .when().get("name").then().assertThat().statusCode(200).body(equalTo("World from test"));
+    }
+
+    @Test
+    public void testGetNames() {
+        RestAssured.given().contentType(ContentType.JSON).body("[\"a\", null, \"b\"]")
+                .when().post("names").then().assertThat().statusCode(200)
+                .body("", contains("World from a", "World", "World from b"));
+    }
 }
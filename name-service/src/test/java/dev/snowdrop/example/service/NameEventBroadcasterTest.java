@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ */
+public class NameEventBroadcasterTest {
+
+    private static final int BUFFER_SIZE = 4;
+
+    private final NameEventBroadcaster broadcaster = new NameEventBroadcaster(300000, BUFFER_SIZE, 1024, 2);
+
+    @After
+    public void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    public void testSlowSubscriberLosesItsOldestEventsOnly() throws Exception {
+        RecordingEmitter fast = new RecordingEmitter();
+        RecordingEmitter slow = new RecordingEmitter();
+        slow.hold();
+        broadcaster.subscribe(fast);
+        broadcaster.subscribe(slow);
+
+        for (int i = 0; i < 100; i++) {
+            broadcaster.publish("event " + i);
+            assertThat(fast.received.poll(5, TimeUnit.SECONDS)).isEqualTo("event " + i);
+            if (i == 0) {
+                // the slow subscriber is stuck sending the first event
+                assertThat(slow.sending.await(5, TimeUnit.SECONDS)).isTrue();
+            }
+        }
+
+        // one event in flight and the last BUFFER_SIZE buffered, the ones in between are dropped
+        int dropped = 100 - 1 - BUFFER_SIZE;
+        await(() -> broadcaster.getDroppedEvents() == dropped);
+        slow.release();
+        List<String> received = new ArrayList<>();
+        for (int i = 0; i < 1 + BUFFER_SIZE; i++) {
+            received.add(slow.received.poll(5, TimeUnit.SECONDS));
+        }
+        assertThat(received).containsExactly("event 0", "event 96", "event 97", "event 98", "event 99");
+        assertThat(broadcaster.getDroppedEvents()).isEqualTo(dropped);
+    }
+
+    @Test
+    public void testDroppedEventsStayCountedWhenTheSubscriberLeaves() throws Exception {
+        RecordingEmitter fast = new RecordingEmitter();
+        RecordingEmitter slow = new RecordingEmitter();
+        slow.hold();
+        broadcaster.subscribe(fast);
+        broadcaster.subscribe(slow);
+        broadcaster.publish("event 0");
+        assertThat(slow.sending.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i <= BUFFER_SIZE + 10; i++) {
+            broadcaster.publish("event " + i);
+            // keep the fast subscriber from dropping anything itself
+            assertThat(fast.received.poll(5, TimeUnit.SECONDS)).isNotNull();
+        }
+        await(() -> broadcaster.getDroppedEvents() == 10);
+
+        slow.disconnect();
+        slow.release();
+        await(() -> broadcaster.getSubscriberCount() == 1);
+
+        assertThat(broadcaster.getDroppedEvents()).isEqualTo(10);
+        broadcaster.publish("event last");
+        await(() -> fast.received.contains("event last"));
+        assertThat(broadcaster.getDroppedEvents()).isEqualTo(10);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Keeps the text of the events sent, optionally after waiting to be released or failing like a closed connection.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+        private final CountDownLatch sending = new CountDownLatch(1);
+
+        private volatile CountDownLatch held = new CountDownLatch(0);
+
+        private volatile boolean disconnected;
+
+        void hold() {
+            held = new CountDownLatch(1);
+        }
+
+        void release() {
+            held.countDown();
+        }
+
+        void disconnect() {
+            disconnected = true;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+                held.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (disconnected) {
+                throw new IOException("Broken pipe");
+            }
+            for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) {
+                if (MediaType.TEXT_PLAIN.equals(data.getMediaType())) {
+                    received.add((String) data.getData());
+                }
+            }
+        }
+    }
+}
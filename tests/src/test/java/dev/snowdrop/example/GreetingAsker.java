@@ -1,5 +1,6 @@
 package dev.snowdrop.example;
 
+import dev.snowdrop.example.common.OutcomeStatistics;
 import io.restassured.RestAssured;
 import io.restassured.response.Response;
 
@@ -8,16 +9,17 @@ import java.net.URL;
 public class GreetingAsker extends Thread {
     private URL istioIngressGateway;
     private int requestCount;
-    private int passedResponses;
-    private int fallbackResponses;
+    private OutcomeStatistics statistics;
 
     private int requestDelay;
 
-    public GreetingAsker(String threadName, URL istioIngressGateway, int requestCount) {
+    /**
+     * @param statistics shared by all the askers, records every response
+     */
+    public GreetingAsker(String threadName, URL istioIngressGateway, int requestCount, OutcomeStatistics statistics) {
         super(threadName);
         this.istioIngressGateway=istioIngressGateway;
-        passedResponses=0;
-        fallbackResponses=0;
+        this.statistics=statistics;
         requestDelay=0;
         this.requestCount=requestCount;
     }
@@ -26,12 +28,15 @@ public class GreetingAsker extends Thread {
     public void run() {
         Response response;
         for (int i=0; i < requestCount ; i++){
+            long start = System.nanoTime();
             response = greetingResponse(getName());
 
-            if (response.body().asString().contains("Fallback")){
-                fallbackResponses++;
+            if (response.statusCode() != 200){
+                statistics.record(OutcomeStatistics.Outcome.ERROR, System.nanoTime() - start);
+            } else if (response.body().asString().contains("Fallback")){
+                statistics.record(OutcomeStatistics.Outcome.FALLBACK, System.nanoTime() - start);
             } else {
-                passedResponses++;
+                statistics.record(OutcomeStatistics.Outcome.PASSED, System.nanoTime() - start);
             }
         }
     }
@@ -48,8 +53,4 @@ public class GreetingAsker extends Thread {
     public void setRequestDelay(int requestDelay) {
         this.requestDelay = requestDelay;
     }
-
-    public ResponsesCount getResponsesCount(){
-        return new ResponsesCount(passedResponses, fallbackResponses);
-    }
 }
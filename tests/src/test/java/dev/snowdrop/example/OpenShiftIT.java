@@ -1,7 +1,10 @@
 package dev.snowdrop.example;
 
+import dev.snowdrop.example.common.OutcomeStatistics;
 import io.restassured.RestAssured;
 import io.restassured.response.Response;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.arquillian.cube.istio.api.IstioResource;
 import org.arquillian.cube.istio.impl.IstioAssistant;
 import org.arquillian.cube.openshift.impl.enricher.RouteURL;
@@ -13,6 +16,7 @@ import org.junit.runner.RunWith;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -38,6 +42,9 @@ public class OpenShiftIT {
     private static final int QUERY_ASKERS_CNT = 50;
     private static final int QUERY_ASKERS_REQUEST_CNT = 100;
     private static final int FALLBACK_RESPONSE_RATIO = 4; // how many passed responses should at most be passed to one fallback response
+    private static final int PROGRESS_SECONDS = 5;
+
+    private static final Log LOG = LogFactory.getLog(OpenShiftIT.class);
 
     @RouteURL(value = ISTIO_INGRESS_GATEWAY_NAME, namespace = ISTIO_NAMESPACE)
     private URL ingressGatewayURL;
@@ -65,7 +72,7 @@ public class OpenShiftIT {
 
         Thread.sleep(TimeUnit.SECONDS.toMillis(10)); // wait for rule to take effect
 
-        ResponsesCount responsesCount = measureResponses(0);
+        OutcomeStatistics statistics = measureResponses(0);
 
         // TODO bring back when resource removal actually works
 //        istioAssistant.undeployIstioResources(resource);
@@ -76,7 +83,7 @@ public class OpenShiftIT {
          * On high performance clusters the circuit breaker may not trip often and it could cause test to fail
          *      even if there are no real failure.
          */
-        assertThat(responsesCount.getFallbackResponses()).isGreaterThan(0);
+        assertThat(statistics.getTotalCount(OutcomeStatistics.Outcome.FALLBACK)).isGreaterThan(0);
     }
 
     @Test
@@ -87,38 +94,42 @@ public class OpenShiftIT {
 //        List <me.snowdrop.istio.api.model.IstioResource> resource = deployIstioResource("restrictive_destination_rule.yml");
 //        Thread.sleep(TimeUnit.SECONDS.toMillis(10)); // wait for rule to take effect
 
-        ResponsesCount responsesCount = measureResponses(150);
+        OutcomeStatistics statistics = measureResponses(150);
 
         // TODO bring back when resource removal actually works
 //        istioAssistant.undeployIstioResources(resource);
 
         // Assert that there are enough fallback responses in the responses
-        assertThat(responsesCount.getPassedResponses())
-                .isLessThanOrEqualTo(responsesCount.getFallbackResponses() * FALLBACK_RESPONSE_RATIO);
+        assertThat(statistics.getTotalCount(OutcomeStatistics.Outcome.PASSED))
+                .isLessThanOrEqualTo(statistics.getTotalCount(OutcomeStatistics.Outcome.FALLBACK) * FALLBACK_RESPONSE_RATIO);
     }
 
     /**
-     * Create multiple threads and measure responses from the greeting service
+     * Create multiple threads and measure responses from the greeting service, logging the progress of the last
+     * seconds while they run
      * @param delay Number of milliseconds of artificial delay of one response
-     * @return Number of passed and fallback responses
+     * @return Passed, fallback and failed responses
      */
-    private ResponsesCount measureResponses(int delay) throws InterruptedException {
+    private OutcomeStatistics measureResponses(int delay) throws InterruptedException {
+        OutcomeStatistics statistics = new OutcomeStatistics(PROGRESS_SECONDS);
         // create threads that will make the calls in parallel
         List<GreetingAsker> askerArray = new ArrayList<>();
         for (int i=0 ; i < QUERY_ASKERS_CNT ; i++){
-            GreetingAsker asker = new GreetingAsker(Integer.toString(i),ingressGatewayURL,QUERY_ASKERS_REQUEST_CNT);
+            GreetingAsker asker = new GreetingAsker(Integer.toString(i),ingressGatewayURL,QUERY_ASKERS_REQUEST_CNT,statistics);
             asker.setRequestDelay(delay);
             asker.start();
             askerArray.add(asker);
         }
 
-        ResponsesCount totalResponses = new ResponsesCount();
-        // wait for threats to end and take their results
+        // wait for threads to end
         for (GreetingAsker greetingAsker : askerArray){
-            greetingAsker.join();
-            totalResponses.addResponses(greetingAsker.getResponsesCount());
+            greetingAsker.join(TimeUnit.SECONDS.toMillis(PROGRESS_SECONDS));
+            while (greetingAsker.isAlive()) {
+                LOG.info(new String(statistics.snapshot().toJson(), StandardCharsets.UTF_8));
+                greetingAsker.join(TimeUnit.SECONDS.toMillis(PROGRESS_SECONDS));
+            }
         }
-        return totalResponses;
+        return statistics;
     }
 
     private Response greetingResponse(String caller) {